@@ -7,6 +7,8 @@ import java.util.function.Consumer;
 
 public class ClickableItem {
 
+    private static final Consumer<InventoryClickEvent> NO_ACTION = e -> {};
+
     private ItemStack item;
     private Consumer<InventoryClickEvent> consumer;
 
@@ -16,7 +18,7 @@ public class ClickableItem {
     }
 
     public static ClickableItem empty(ItemStack item) {
-        return of(item, e -> {});
+        return of(item, NO_ACTION);
     }
 
     public static ClickableItem of(ItemStack item, Consumer<InventoryClickEvent> consumer) {
@@ -24,6 +26,7 @@ public class ClickableItem {
     }
 
     public void run(InventoryClickEvent e) { consumer.accept(e); }
+    public boolean isInert() { return consumer == NO_ACTION; }
 
     public ItemStack getItem() { return item; }
 
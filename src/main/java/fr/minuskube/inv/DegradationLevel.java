@@ -0,0 +1,22 @@
+package fr.minuskube.inv;
+
+// How much the updates of non-critical inventories are stretched while the server is lagging
+public enum DegradationLevel {
+
+    NONE(1, false),
+    LIGHT(2, false),
+    HEAVY(4, true),
+    SEVERE(10, true);
+
+    private final int updateInterval;
+    private final boolean animationsPaused;
+
+    DegradationLevel(int updateInterval, boolean animationsPaused) {
+        this.updateInterval = updateInterval;
+        this.animationsPaused = animationsPaused;
+    }
+
+    public int getUpdateInterval() { return updateInterval; }
+    public boolean areAnimationsPaused() { return animationsPaused; }
+
+}
@@ -1,9 +1,17 @@
 package fr.minuskube.inv;
 
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import fr.minuskube.inv.content.InventoryContents;
+import fr.minuskube.inv.content.Panes;
+import fr.minuskube.inv.metrics.AllocationProfiler;
 import fr.minuskube.inv.opener.ChestInventoryOpener;
 import fr.minuskube.inv.opener.InventoryOpener;
 import fr.minuskube.inv.opener.SpecialInventoryOpener;
+import fr.minuskube.inv.render.BukkitRenderer;
+import fr.minuskube.inv.render.InventoryRenderer;
+import fr.minuskube.inv.state.InMemoryMenuStateStore;
+import fr.minuskube.inv.state.MenuStateStore;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
@@ -19,36 +27,101 @@ import org.bukkit.event.inventory.InventoryType;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.event.server.PluginDisableEvent;
 import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.Plugin;
 import org.bukkit.plugin.PluginManager;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 
 public class InventoryManager {
 
+    private static final long REOPEN_WINDOW = 1000;
+    private static final long MAX_REOPEN_DELAY = 20;
+    private static final long PREPARED_EVICTION_INTERVAL = 20;
+
     private JavaPlugin plugin;
     private PluginManager pluginManager;
 
-    private Map<UUID, SmartInventory> inventories;
-    private Map<UUID, InventoryContents> contents;
+    private int expectedPlayers;
+    private Map<UUID, InventorySession> sessions;
+    private ArrayList<InventorySession> tickSessions;
+    private Set<InventoryContents> tickShared;
+    private Set<SmartInventory> dirtyShared;
+    private int updateShards = 4;
+    private int tick;
+    private long shardRounds;
+
+    // Average time between two runs of the update task, in milliseconds
+    private long lastTickTime;
+    private long tickCount;
+    private double averageTickTime = 50;
+    private DegradationLevel degradation = DegradationLevel.NONE;
+    private double[] degradationThresholds = { 0, 60, 75, 100 };
+    private double recoveryMargin = 5;
+
+    private Map<SmartInventory, Set<InventorySession>> viewers;
+    private Map<SmartInventory, BukkitTask> pendingTeardowns;
+    private Map<Plugin, Set<SmartInventory>> ownedInventories;
+
+    // Inventories holding contents prepared for players, possibly added from another thread
+    private Set<SmartInventory> preparedInventories = ConcurrentHashMap.newKeySet();
+
+    private MenuStateStore stateStore;
+    private Map<String, Set<InventoryContents>> stateViews;
+    private Consumer<String> stateListener = this::onStateChanged;
+    private Set<String> pendingRefreshes = ConcurrentHashMap.newKeySet();
+
+    private int navigationSnapshots;
+    private int maxNavigationDepth = 8;
+    private int maxNavigationSnapshots = 1024;
+
+    private InventoryRenderer renderer = new BukkitRenderer();
+    private WorkQueue workQueue = new WorkQueue();
+
+    private long reopens;
+
+    private AllocationProfiler profiler;
+    private BukkitTask profilerLogTask;
 
     private List<InventoryOpener> defaultOpeners;
     private List<InventoryOpener> openers;
 
-    public InventoryManager(JavaPlugin plugin) {
+    public InventoryManager(JavaPlugin plugin) { this(plugin, 16); }
+    public InventoryManager(JavaPlugin plugin, int expectedPlayers) {
         this.plugin = plugin;
         this.pluginManager = Bukkit.getPluginManager();
 
-        this.inventories = new HashMap<>();
-        this.contents = new HashMap<>();
+        this.expectedPlayers = expectedPlayers;
+        this.sessions = Maps.newHashMapWithExpectedSize(expectedPlayers);
+        this.tickSessions = new ArrayList<>(expectedPlayers);
+        this.tickShared = new HashSet<>();
+        this.dirtyShared = new HashSet<>();
+
+        this.viewers = new HashMap<>();
+        this.pendingTeardowns = new HashMap<>();
+        this.ownedInventories = new HashMap<>();
+
+        this.stateViews = new HashMap<>();
+        setStateStore(new InMemoryMenuStateStore());
 
         this.defaultOpeners = Arrays.asList(
                 new ChestInventoryOpener(),
@@ -64,6 +137,33 @@ public class InventoryManager {
         new InvTask().runTaskTimer(plugin, 1, 1);
     }
 
+    public JavaPlugin getPlugin() { return plugin; }
+
+    // Grows the per-player tables once, rather than rehashing them repeatedly when many players join at once
+    public void ensureCapacity(int expectedPlayers) {
+        if (!Bukkit.isPrimaryThread()) {
+            requestCapacity(expectedPlayers);
+            return;
+        }
+
+        if (expectedPlayers <= this.expectedPlayers)
+            return;
+
+        this.expectedPlayers = expectedPlayers;
+
+        Map<UUID, InventorySession> resized = Maps.newHashMapWithExpectedSize(expectedPlayers);
+        resized.putAll(this.sessions);
+
+        this.sessions = resized;
+        this.tickSessions.ensureCapacity(expectedPlayers);
+    }
+
+    // Can be called from any thread, e.g. when menus are compiled off the main thread, applied at the next tick
+    void requestCapacity(int expectedPlayers) {
+        if (expectedPlayers > this.expectedPlayers)
+            this.workQueue.submit(WorkQueue.Priority.NORMAL, () -> ensureCapacity(expectedPlayers));
+    }
+
     public Optional<InventoryOpener> findOpener(InventoryType type) {
         Optional<InventoryOpener> opInv = this.openers.stream()
                 .filter(opener -> opener.supports(type))
@@ -83,36 +183,526 @@ public class InventoryManager {
     }
 
     public List<Player> getOpenedPlayers(SmartInventory inv) {
-        List<Player> list = new ArrayList<>();
+        Set<InventorySession> invViewers = this.viewers.get(inv);
 
-        this.inventories.forEach((player, playerInv) -> {
-            if (inv.equals(playerInv))
-                list.add(Bukkit.getPlayer(player));
-        });
+        if (invViewers == null)
+            return new ArrayList<>();
+
+        List<Player> list = new ArrayList<>(invViewers.size());
+        invViewers.forEach(session -> list.add(session.getPlayer()));
 
         return list;
     }
 
+    public int getViewerCount(SmartInventory inv) {
+        return this.viewers.getOrDefault(inv, Collections.emptySet()).size();
+    }
+
+    public Optional<InventorySession> getSession(Player p) {
+        return getSession(p.getUniqueId());
+    }
+
+    public Optional<InventorySession> getSession(UUID uuid) {
+        return Optional.ofNullable(this.sessions.get(uuid));
+    }
+
     public Optional<SmartInventory> getInventory(Player p) {
-        return Optional.ofNullable(this.inventories.get(p.getUniqueId()));
+        InventorySession session = this.sessions.get(p.getUniqueId());
+        return Optional.ofNullable(session != null ? session.getInventory() : null);
     }
 
     protected void setInventory(Player p, SmartInventory inv) {
-        if (inv == null)
-            this.inventories.remove(p.getUniqueId());
-        else
-            this.inventories.put(p.getUniqueId(), inv);
+        setInventory(p, inv, inv != null ? p.getOpenInventory().getTopInventory() : null);
+    }
+
+    protected void setInventory(Player p, SmartInventory inv, Inventory handle) {
+        InventorySession session = session(p, inv != null);
+
+        if (session == null)
+            return;
+
+        SmartInventory oldInv = session.getInventory();
+
+        if (session.getHandle() != handle)
+            this.renderer.discard(session);
+
+        if (oldInv != inv)
+            session.cancelReopen();
+
+        if (oldInv != inv)
+            session.clearOverrides();
+
+        session.setInventory(inv, handle);
+
+        if (oldInv != inv) {
+            if (oldInv != null)
+                removeViewer(oldInv, session);
+            if (inv != null)
+                addViewer(inv, session);
+        }
+
+        release(session);
+    }
+
+    private InventorySession session(Player p, boolean create) {
+        InventorySession session = this.sessions.get(p.getUniqueId());
+
+        if (session == null && create) {
+            session = new InventorySession(p);
+            this.sessions.put(p.getUniqueId(), session);
+        }
+
+        return session;
+    }
+
+    private void release(InventorySession session) {
+        if (session.isEmpty())
+            this.sessions.remove(session.getPlayer().getUniqueId(), session);
+    }
+
+    private void addViewer(SmartInventory inv, InventorySession session) {
+        Set<InventorySession> invViewers = this.viewers.computeIfAbsent(inv,
+                k -> Sets.newHashSetWithExpectedSize(Math.max(inv.getExpectedViewers(), 4)));
+
+        if (!invViewers.add(session) || invViewers.size() > 1)
+            return;
+
+        this.ownedInventories.computeIfAbsent(inv.getOwner(), k -> new HashSet<>()).add(inv);
+
+        // Reopened before the teardown ran, the inventory never became idle
+        BukkitTask teardown = this.pendingTeardowns.remove(inv);
+
+        if (teardown != null) {
+            teardown.cancel();
+            return;
+        }
+
+        try {
+            inv.getProvider().firstOpened(inv);
+        } catch (Exception e) {
+            Bukkit.getLogger().log(Level.SEVERE, "Error while activating SmartInventory:", e);
+        }
+    }
+
+    private void removeViewer(SmartInventory inv, InventorySession session) {
+        Set<InventorySession> invViewers = this.viewers.get(inv);
+
+        if (invViewers == null || !invViewers.remove(session) || !invViewers.isEmpty())
+            return;
+
+        this.viewers.remove(inv);
+
+        Set<SmartInventory> owned = this.ownedInventories.get(inv.getOwner());
+
+        if (owned != null && owned.remove(inv) && owned.isEmpty())
+            this.ownedInventories.remove(inv.getOwner());
+
+        if (!plugin.isEnabled()) {
+            teardown(inv);
+            return;
+        }
+
+        // Deferred so that reopening the same inventory (e.g. changing page) doesn't cycle the hooks
+        this.pendingTeardowns.put(inv, Bukkit.getScheduler().runTaskLater(plugin, () -> {
+            this.pendingTeardowns.remove(inv);
+            teardown(inv);
+        }, inv.getIdleTimeout()));
+    }
+
+    private void teardown(SmartInventory inv) {
+        try {
+            inv.getProvider().lastClosed(inv);
+        } catch (Exception e) {
+            Bukkit.getLogger().log(Level.SEVERE, "Error while deactivating SmartInventory:", e);
+        }
+
+        InventoryContents shared = inv.releaseSharedContents();
+
+        if (shared != null)
+            unbindState(shared);
+    }
+
+    private void runPendingTeardowns(Plugin owner) {
+        Iterator<Map.Entry<SmartInventory, BukkitTask>> it = this.pendingTeardowns.entrySet().iterator();
+        List<SmartInventory> idle = new ArrayList<>();
+
+        while (it.hasNext()) {
+            Map.Entry<SmartInventory, BukkitTask> entry = it.next();
+
+            if (owner != null && entry.getKey().getOwner() != owner)
+                continue;
+
+            entry.getValue().cancel();
+            idle.add(entry.getKey());
+            it.remove();
+        }
+
+        idle.forEach(this::teardown);
     }
 
     public Optional<InventoryContents> getContents(Player p) {
-        return Optional.ofNullable(this.contents.get(p.getUniqueId()));
+        InventorySession session = this.sessions.get(p.getUniqueId());
+        return Optional.ofNullable(session != null ? session.getContents() : null);
     }
 
     protected void setContents(Player p, InventoryContents contents) {
-        if (contents == null)
-            this.contents.remove(p.getUniqueId());
-        else
-            this.contents.put(p.getUniqueId(), contents);
+        InventorySession session = session(p, contents != null);
+
+        if (session == null)
+            return;
+
+        InventoryContents oldContents = session.getContents();
+        session.setContents(contents);
+
+        // Shared contents stay bound to their state until the inventory is torn down
+        if (oldContents != null && oldContents != contents && !oldContents.inventory().isShared()
+                && !isNavigationSnapshot(session, oldContents))
+            unbindState(oldContents);
+
+        release(session);
+    }
+
+    // Sends a change of shared contents to all of their viewers in one pass, except where overridden.
+    // The viewers are flushed together once the update, click or refresh which made the changes is over
+    public void renderShared(InventoryContents contents, int slot, ItemStack item) {
+        Set<InventorySession> invViewers = this.viewers.get(contents.inventory());
+
+        if (invViewers == null)
+            return;
+
+        for (InventorySession session : invViewers) {
+            if (session.getContents() == contents && session.getOverride(slot) == null)
+                this.renderer.render(session, slot, item);
+        }
+
+        this.dirtyShared.add(contents.inventory());
+    }
+
+    private void flushShared() {
+        if (this.dirtyShared.isEmpty())
+            return;
+
+        for (SmartInventory inv : this.dirtyShared) {
+            Set<InventorySession> invViewers = this.viewers.get(inv);
+
+            if (invViewers != null)
+                invViewers.forEach(this.renderer::flush);
+        }
+
+        this.dirtyShared.clear();
+    }
+
+    public void setOverride(Player p, int row, int column, ClickableItem item) {
+        InventorySession session = this.sessions.get(p.getUniqueId());
+
+        if (session == null || !session.isOpen())
+            return;
+
+        SmartInventory inv = session.getInventory();
+        int slot = inv.getColumns() * row + column;
+
+        session.setOverride(slot, item, inv.getRows() * inv.getColumns());
+
+        ItemStack shown = item != null
+                ? item.getItem()
+                : session.getContents().get(row, column).map(ClickableItem::getItem).orElse(null);
+
+        this.renderer.render(session, slot, shown);
+        this.renderer.flush(session);
+    }
+
+    public void clearOverride(Player p, int row, int column) {
+        setOverride(p, row, column, null);
+    }
+
+    public long getReopens() { return reopens; }
+
+    // Clients spamming the close key get their inventory reopened at most once per pending delay,
+    // which doubles while they keep closing it within REOPEN_WINDOW
+    private void scheduleReopen(InventorySession session, SmartInventory inv, Inventory handle) {
+        if (session.isReopenPending())
+            return;
+
+        long now = System.currentTimeMillis();
+        session.setReopenAttempts(now - session.getLastReopen() < REOPEN_WINDOW ? session.getReopenAttempts() + 1 : 0);
+
+        long delay = Math.min(1L << Math.min(session.getReopenAttempts(), 5), MAX_REOPEN_DELAY);
+        this.reopens++;
+
+        session.setReopenTask(Bukkit.getScheduler().runTaskLater(plugin, () -> {
+            session.setReopenTask(null);
+            session.setLastReopen(System.currentTimeMillis());
+
+            Player player = session.getPlayer();
+
+            // Closed, replaced or quit in the meantime
+            if (session.getInventory() != inv || this.sessions.get(player.getUniqueId()) != session)
+                return;
+
+            player.openInventory(handle);
+        }, delay));
+    }
+
+    public WorkQueue getWorkQueue() { return workQueue; }
+
+    public InventoryRenderer getRenderer() { return renderer; }
+
+    public void setRenderer(InventoryRenderer renderer) {
+        this.sessions.values().forEach(session -> {
+            this.renderer.flush(session);
+            this.renderer.discard(session);
+        });
+
+        this.renderer = renderer;
+    }
+
+    protected void flush(Player p) {
+        InventorySession session = this.sessions.get(p.getUniqueId());
+
+        if (session != null)
+            this.renderer.flush(session);
+    }
+
+    // Runs of the update task since the manager was initialized, one per server tick
+    public long getTickCount() { return tickCount; }
+
+    public DegradationLevel getDegradationLevel() { return degradation; }
+    public double getAverageTickTime() { return averageTickTime; }
+
+    // Average tick times in milliseconds from which each level applies, and how far below them it has to go back
+    public void setDegradationThresholds(double light, double heavy, double severe, double recoveryMargin) {
+        if (light > heavy || heavy > severe)
+            throw new IllegalArgumentException("The degradation thresholds must be in increasing order.");
+
+        this.degradationThresholds = new double[] { 0, light, heavy, severe };
+        this.recoveryMargin = recoveryMargin;
+    }
+
+    private void updateDegradation(double tickTime) {
+        this.averageTickTime = this.averageTickTime * 0.9 + tickTime * 0.1;
+
+        DegradationLevel target = DegradationLevel.NONE;
+
+        for (DegradationLevel level : DegradationLevel.values()) {
+            if (this.averageTickTime >= this.degradationThresholds[level.ordinal()])
+                target = level;
+        }
+
+        // Only recover once clearly below the current level's threshold, to avoid flapping around it
+        if (target.ordinal() < this.degradation.ordinal()
+                && this.averageTickTime > this.degradationThresholds[this.degradation.ordinal()] - this.recoveryMargin)
+            return;
+
+        if (target == this.degradation)
+            return;
+
+        this.degradation = target;
+        plugin.getLogger().info(String.format(Locale.ROOT, "SmartInvs degradation level is now %s (average tick of %.1f ms).",
+                target.name(), this.averageTickTime));
+    }
+
+    public int getUpdateShards() { return updateShards; }
+
+    public void setUpdateShards(int shards) {
+        if (shards < 1)
+            throw new IllegalArgumentException("The update shards count must be at least 1.");
+
+        this.updateShards = shards;
+    }
+
+    public void setNavigationLimits(int maxDepth, int maxSnapshots) {
+        this.maxNavigationDepth = maxDepth;
+        this.maxNavigationSnapshots = maxSnapshots;
+    }
+
+    public int getNavigationSnapshots() { return navigationSnapshots; }
+
+    protected void pushNavigation(Player p, InventoryContents contents) {
+        if (this.maxNavigationDepth <= 0)
+            return;
+
+        InventorySession session = session(p, true);
+        Deque<InventoryContents> stack = session.navigation(true);
+
+        // Over the global budget, this player's own oldest snapshot is dropped first, or none is taken
+        if (stack.size() >= this.maxNavigationDepth || this.navigationSnapshots >= this.maxNavigationSnapshots) {
+            if (stack.isEmpty()) {
+                release(session);
+                return;
+            }
+
+            dropNavigation(stack.removeLast());
+        }
+
+        stack.push(contents);
+        this.navigationSnapshots++;
+    }
+
+    protected Optional<InventoryContents> popNavigation(Player p, SmartInventory inv) {
+        InventorySession session = this.sessions.get(p.getUniqueId());
+        Deque<InventoryContents> stack = session != null ? session.navigation(false) : null;
+
+        if (stack == null || stack.isEmpty())
+            return Optional.empty();
+
+        if (stack.peek().inventory() != inv) {
+            clearNavigation(p);
+            return Optional.empty();
+        }
+
+        InventoryContents contents = stack.pop();
+        this.navigationSnapshots--;
+
+        return Optional.of(contents);
+    }
+
+    protected void clearNavigation(Player p) {
+        InventorySession session = this.sessions.get(p.getUniqueId());
+        Deque<InventoryContents> stack = session != null ? session.navigation(false) : null;
+
+        if (stack == null)
+            return;
+
+        stack.forEach(this::dropNavigation);
+        stack.clear();
+
+        release(session);
+    }
+
+    private void dropNavigation(InventoryContents contents) {
+        this.navigationSnapshots--;
+
+        // Shared contents stay bound to their state until the inventory is torn down
+        if (!contents.inventory().isShared())
+            unbindState(contents);
+    }
+
+    private boolean isNavigationSnapshot(InventorySession session, InventoryContents contents) {
+        Deque<InventoryContents> stack = session.navigation(false);
+        return stack != null && stack.contains(contents);
+    }
+
+    public MenuStateStore getStateStore() { return stateStore; }
+
+    public void setStateStore(MenuStateStore stateStore) {
+        if (this.stateStore != null)
+            this.stateStore.removeListener(stateListener);
+
+        this.stateStore = stateStore;
+        this.stateStore.addListener(stateListener);
+    }
+
+    public void bindState(String key, InventoryContents contents) {
+        // Contents may be prepared off the main thread
+        if (!Bukkit.isPrimaryThread()) {
+            this.workQueue.submit(WorkQueue.Priority.NORMAL, () -> bindState(key, contents));
+            return;
+        }
+
+        this.stateViews.computeIfAbsent(key, k -> new HashSet<>()).add(contents);
+    }
+
+    public void unbindState(String key, InventoryContents contents) {
+        if (!Bukkit.isPrimaryThread()) {
+            this.workQueue.submit(WorkQueue.Priority.NORMAL, () -> unbindState(key, contents));
+            return;
+        }
+
+        Set<InventoryContents> views = this.stateViews.get(key);
+
+        if (views != null && views.remove(contents) && views.isEmpty())
+            this.stateViews.remove(key);
+    }
+
+    void trackPrepared(SmartInventory inv) {
+        this.preparedInventories.add(inv);
+    }
+
+    void discardContents(InventoryContents contents) {
+        if (!Bukkit.isPrimaryThread()) {
+            this.workQueue.submit(WorkQueue.Priority.BACKGROUND, () -> discardContents(contents));
+            return;
+        }
+
+        unbindState(contents);
+    }
+
+    private void unbindState(InventoryContents contents) {
+        if (this.stateViews.isEmpty())
+            return;
+
+        Iterator<Set<InventoryContents>> it = this.stateViews.values().iterator();
+
+        while (it.hasNext()) {
+            Set<InventoryContents> views = it.next();
+
+            if (views.remove(contents) && views.isEmpty())
+                it.remove();
+        }
+    }
+
+    // Refreshes run in the background of the work queue, once per key however often it changed meanwhile
+    private void onStateChanged(String key) {
+        if (!plugin.isEnabled() || !this.pendingRefreshes.add(key))
+            return;
+
+        this.workQueue.submit(WorkQueue.Priority.BACKGROUND, () -> {
+            this.pendingRefreshes.remove(key);
+            refreshState(key);
+        });
+    }
+
+    private void refreshState(String key) {
+        Set<InventoryContents> views = this.stateViews.get(key);
+
+        if (views == null)
+            return;
+
+        // Copied since a refresh may close the inventory and unbind its contents
+        new ArrayList<>(views).forEach(view -> {
+            try {
+                view.refresh(key);
+            } catch (Exception e) {
+                Bukkit.getLogger().log(Level.SEVERE, "Error while refreshing SmartInventory state:", e);
+            }
+        });
+
+        flushShared();
+    }
+
+    public Optional<AllocationProfiler> getProfiler() { return Optional.ofNullable(profiler); }
+
+    AllocationProfiler profiler() { return profiler; }
+
+    // Samples allocations of init, update and click handlers per inventory id, logging a summary every logInterval ticks if > 0
+    public void enableProfiling(long logInterval) {
+        disableProfiling();
+
+        if (!AllocationProfiler.isSupported())
+            plugin.getLogger().warning("Allocation profiling is not supported by this JVM.");
+
+        this.profiler = new AllocationProfiler();
+
+        if (logInterval > 0) {
+            this.profilerLogTask = Bukkit.getScheduler().runTaskTimer(plugin, () -> {
+                List<String> lines = this.profiler.summary();
+                this.profiler.reset();
+
+                if (lines.isEmpty())
+                    return;
+
+                plugin.getLogger().info("SmartInvs allocations over the last " + logInterval + " ticks:");
+                lines.forEach(line -> plugin.getLogger().info("  " + line));
+            }, logInterval, logInterval);
+        }
+    }
+
+    public void disableProfiling() {
+        if (this.profilerLogTask != null)
+            this.profilerLogTask.cancel();
+
+        this.profiler = null;
+        this.profilerLogTask = null;
     }
 
     public void handleInventoryOpenError(SmartInventory inventory, Player player, Exception exception) {
@@ -121,6 +711,10 @@ public class InventoryManager {
         Bukkit.getLogger().log(Level.SEVERE, "Error while opening SmartInventory:", exception);
     }
 
+    public void handleInventoryPrepareError(SmartInventory inventory, Player player, Exception exception) {
+        Bukkit.getLogger().log(Level.SEVERE, "Error while preparing SmartInventory:", exception);
+    }
+
     public void handleInventoryUpdateError(SmartInventory inventory, Player player, Exception exception) {
         inventory.close(player);
 
@@ -133,8 +727,9 @@ public class InventoryManager {
         @EventHandler(priority = EventPriority.LOW)
         public void onInventoryClick(InventoryClickEvent e) {
             Player p = (Player) e.getWhoClicked();
+            InventorySession session = sessions.get(p.getUniqueId());
 
-            if (!inventories.containsKey(p.getUniqueId()))
+            if (session == null || !session.isOpen())
                 return;
 
             // Restrict putting items from the bottom inventory into the top inventory
@@ -160,29 +755,55 @@ public class InventoryManager {
                 if (row < 0 || column < 0)
                     return;
 
-                SmartInventory inv = inventories.get(p.getUniqueId());
+                SmartInventory inv = session.getInventory();
 
                 if (row >= inv.getRows() || column >= inv.getColumns())
                     return;
 
-                inv.getListeners().stream()
-                        .filter(listener -> listener.getType() == InventoryClickEvent.class)
-                        .forEach(listener -> ((InventoryListener<InventoryClickEvent>) listener).accept(e));
+                long mark = profiler != null ? profiler.mark() : -1;
+
+                if (!inv.getListeners().isEmpty())
+                    inv.getListeners().stream()
+                            .filter(listener -> listener.getType() == InventoryClickEvent.class)
+                            .forEach(listener -> ((InventoryListener<InventoryClickEvent>) listener).accept(e));
+
+                SlotActions slotActions = inv.getSlotActions();
+                ClickableItem override = session.getOverride(e.getSlot());
+
+                if (override != null)
+                    override.run(e);
+                else if (slotActions != null)
+                    slotActions.run(e.getSlot(), e);
+                else {
+                    InventoryContents invContents = session.getContents();
+
+                    Panes panes = invContents.panesIfPresent();
+
+                    // Slots owned by a pane are routed to it through its lookup table
+                    if (panes == null || !panes.click(e, row, column))
+                        invContents.get(row, column).ifPresent(item -> item.run(e));
+                }
+
+                if (profiler != null)
+                    profiler.record(inv.getId(), AllocationProfiler.Phase.CLICK, mark);
 
-                contents.get(p.getUniqueId()).get(row, column).ifPresent(item -> item.run(e));
+                renderer.flush(session);
+                flushShared();
 
-                p.updateInventory();
+                if (slotActions == null || slotActions.needsResync(e.getSlot()))
+                    p.updateInventory();
             }
         }
 
         @EventHandler(priority = EventPriority.LOW)
         public void onInventoryDrag(InventoryDragEvent e) {
             Player p = (Player) e.getWhoClicked();
+            InventorySession session = sessions.get(p.getUniqueId());
 
-            if (!inventories.containsKey(p.getUniqueId()))
+            if (session == null || !session.isOpen())
                 return;
 
-            SmartInventory inv = inventories.get(p.getUniqueId());
+            SmartInventory inv = session.getInventory();
 
             for (int slot : e.getRawSlots()) {
                 if (slot >= p.getOpenInventory().getTopInventory().getSize())
@@ -200,11 +821,12 @@ public class InventoryManager {
         @EventHandler(priority = EventPriority.LOW)
         public void onInventoryOpen(InventoryOpenEvent e) {
             Player p = (Player) e.getPlayer();
+            InventorySession session = sessions.get(p.getUniqueId());
 
-            if (!inventories.containsKey(p.getUniqueId()))
+            if (session == null || !session.isOpen())
                 return;
 
-            SmartInventory inv = inventories.get(p.getUniqueId());
+            SmartInventory inv = session.getInventory();
 
             inv.getListeners().stream()
                     .filter(listener -> listener.getType() == InventoryOpenEvent.class)
@@ -214,11 +836,12 @@ public class InventoryManager {
         @EventHandler(priority = EventPriority.LOW)
         public void onInventoryClose(InventoryCloseEvent e) {
             Player p = (Player) e.getPlayer();
+            InventorySession session = sessions.get(p.getUniqueId());
 
-            if (!inventories.containsKey(p.getUniqueId()))
+            if (session == null || !session.isOpen())
                 return;
 
-            SmartInventory inv = inventories.get(p.getUniqueId());
+            SmartInventory inv = session.getInventory();
 
             inv.getListeners().stream()
                     .filter(listener -> listener.getType() == InventoryCloseEvent.class)
@@ -227,41 +850,89 @@ public class InventoryManager {
             if (inv.isCloseable()) {
                 e.getInventory().clear();
 
-                inventories.remove(p.getUniqueId());
-                contents.remove(p.getUniqueId());
+                setInventory(p, null);
+                setContents(p, null);
+                clearNavigation(p);
             } else
-                Bukkit.getScheduler().runTask(plugin, () -> p.openInventory(e.getInventory()));
+                scheduleReopen(session, inv, session.getHandle() != null ? session.getHandle() : e.getInventory());
         }
 
         @EventHandler(priority = EventPriority.LOW)
         public void onPlayerQuit(PlayerQuitEvent e) {
             Player p = e.getPlayer();
+            preparedInventories.forEach(inv -> inv.discardPrepared(p.getUniqueId()));
 
-            if (!inventories.containsKey(p.getUniqueId()))
+            InventorySession session = sessions.get(p.getUniqueId());
+
+            if (session == null || !session.isOpen())
                 return;
 
-            SmartInventory inv = inventories.get(p.getUniqueId());
+            SmartInventory inv = session.getInventory();
 
             inv.getListeners().stream()
                     .filter(listener -> listener.getType() == PlayerQuitEvent.class)
                     .forEach(listener -> ((InventoryListener<PlayerQuitEvent>) listener).accept(e));
 
-            inventories.remove(p.getUniqueId());
-            contents.remove(p.getUniqueId());
+            setInventory(p, null);
+            setContents(p, null);
+            clearNavigation(p);
         }
 
         @EventHandler(priority = EventPriority.LOW)
         public void onPluginDisable(PluginDisableEvent e) {
-            new HashMap<>(inventories).forEach((player, inv) -> {
-                inv.getListeners().stream()
-                        .filter(listener -> listener.getType() == PluginDisableEvent.class)
-                        .forEach(listener -> ((InventoryListener<PluginDisableEvent>) listener).accept(e));
+            if (e.getPlugin() == plugin) {
+                closeAll(viewers.keySet(), e);
+
+                sessions.clear();
+                viewers.clear();
+                ownedInventories.clear();
+                stateViews.clear();
+                navigationSnapshots = 0;
+
+                workQueue.clear();
+                pendingRefreshes.clear();
+                dirtyShared.clear();
+
+                preparedInventories.forEach(SmartInventory::discardPrepared);
+                preparedInventories.clear();
+
+                // Our own tasks are cancelled right after this event, so release everything now
+                runPendingTeardowns(null);
+                return;
+            }
+
+            Set<SmartInventory> owned = ownedInventories.get(e.getPlugin());
+
+            if (owned != null)
+                closeAll(owned, e);
 
-                inv.close(Bukkit.getPlayer(player));
+            preparedInventories.removeIf(inv -> {
+                if (inv.getOwner() != e.getPlugin())
+                    return false;
+
+                inv.discardPrepared();
+                return true;
             });
 
-            inventories.clear();
-            contents.clear();
+            // The owner is going away, don't call into it on a later tick
+            runPendingTeardowns(e.getPlugin());
+        }
+
+        private void closeAll(Collection<SmartInventory> invs, PluginDisableEvent e) {
+            new ArrayList<>(invs).forEach(inv -> {
+                Set<InventorySession> invViewers = viewers.get(inv);
+
+                if (invViewers == null)
+                    return;
+
+                new ArrayList<>(invViewers).forEach(session -> {
+                    inv.getListeners().stream()
+                            .filter(listener -> listener.getType() == PluginDisableEvent.class)
+                            .forEach(listener -> ((InventoryListener<PluginDisableEvent>) listener).accept(e));
+
+                    inv.close(session.getPlayer());
+                });
+            });
         }
 
     }
@@ -270,15 +941,95 @@ public class InventoryManager {
 
         @Override
         public void run() {
-            new HashMap<>(inventories).forEach((uuid, inv) -> {
-                Player player = Bukkit.getPlayer(uuid);
+            long now = System.nanoTime();
+
+            if (lastTickTime != 0)
+                updateDegradation((now - lastTickTime) / 1e6);
+
+            lastTickTime = now;
+            tickCount++;
+
+            workQueue.drain();
+
+            // Contents prepared for players who didn't open them before they expired
+            if (tickCount % PREPARED_EVICTION_INTERVAL == 0 && !preparedInventories.isEmpty()) {
+                long time = System.currentTimeMillis();
+                preparedInventories.removeIf(inv -> inv.evictPrepared(time));
+            }
+
+            // Reused buffer, updates may open or close inventories while iterating
+            tickSessions.addAll(sessions.values());
+
+            // Sharded inventories are only updated every updateShards ticks, on their player's bucket
+            int shard = tick % updateShards;
+            tick = (shard + 1) % updateShards;
+
+            // Sharded inventories get one update opportunity per round over the shards
+            if (shard == 0)
+                shardRounds++;
+
+            try {
+                update(shard);
+                flushShared();
+            } finally {
+                // Not kept until the next tick when an error escapes an update
+                tickSessions.clear();
+                tickShared.clear();
+            }
+        }
+
+        private void update(int shard) {
+            for (InventorySession session : tickSessions) {
+                SmartInventory inv = session.getInventory();
+                Player player = session.getPlayer();
+
+                if (inv == null)
+                    continue;
+
+                int hash = player.getUniqueId().hashCode();
+
+                if (inv.isSharded() && Math.floorMod(hash, updateShards) != shard) {
+                    renderer.flush(session);
+                    continue;
+                }
+
+                // Under lag, non-critical inventories skip some of their update opportunities, spread by player
+                int interval = inv.isCritical() ? 1 : degradation.getUpdateInterval();
+
+                // Counted in rounds for sharded inventories, their ticks would never line up with the interval
+                long opportunity = inv.isSharded() ? shardRounds + Math.floorDiv(hash, updateShards) : tickCount + hash;
+
+                if (interval > 1 && Math.floorMod(opportunity, interval) != 0) {
+                    renderer.flush(session);
+                    continue;
+                }
+
+                InventoryContents invContents = session.getContents();
+
+                // Shared contents are updated once per tick, by their first viewer in this pass
+                if (inv.isShared() && !tickShared.add(invContents)) {
+                    renderer.flush(session);
+                    continue;
+                }
 
                 try {
-                    inv.getProvider().update(player, contents.get(uuid));
+                    long mark = profiler != null ? profiler.mark() : -1;
+
+                    inv.getProvider().update(player, invContents);
+
+                    Panes panes = invContents.panesIfPresent();
+
+                    if (panes != null)
+                        panes.update(player, inv.isCritical() || !degradation.areAnimationsPaused());
+
+                    renderer.flush(session);
+
+                    if (profiler != null)
+                        profiler.record(inv.getId(), AllocationProfiler.Phase.UPDATE, mark);
                 } catch (Exception e) {
                     handleInventoryUpdateError(inv, player, e);
                 }
-            });
+            }
         }
 
     }
@@ -0,0 +1,108 @@
+package fr.minuskube.inv;
+
+import fr.minuskube.inv.content.InventoryContents;
+import fr.minuskube.inv.content.PageCache;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.Deque;
+import java.util.LinkedList;
+
+// Everything the manager tracks for a player with a SmartInventory opened, or being opened
+public class InventorySession {
+
+    private final Player player;
+
+    // The inventory and its handle are only set once it is opened, the contents already during init
+    private SmartInventory inventory;
+    private InventoryContents contents;
+    private Inventory handle;
+
+    private Deque<InventoryContents> navigation;
+
+    // Items shown to this player only, over the contents, indexed by slot
+    private ClickableItem[] overrides;
+
+    private SmartInventory pageCacheOwner;
+    private PageCache pageCache;
+
+    // Reopening of a non-closeable inventory, at most one pending per player
+    private BukkitTask reopenTask;
+    private int reopenAttempts;
+    private long lastReopen;
+
+    InventorySession(Player player) {
+        this.player = player;
+    }
+
+    public Player getPlayer() { return player; }
+
+    public SmartInventory getInventory() { return inventory; }
+    public InventoryContents getContents() { return contents; }
+    public Inventory getHandle() { return handle; }
+
+    public boolean isOpen() { return inventory != null; }
+
+    void setInventory(SmartInventory inventory, Inventory handle) {
+        this.inventory = inventory;
+        this.handle = handle;
+    }
+
+    void setContents(InventoryContents contents) { this.contents = contents; }
+
+    public ClickableItem getOverride(int slot) {
+        return overrides != null && slot >= 0 && slot < overrides.length ? overrides[slot] : null;
+    }
+
+    void setOverride(int slot, ClickableItem item, int size) {
+        if (overrides == null) {
+            if (item == null)
+                return;
+
+            overrides = new ClickableItem[size];
+        }
+
+        overrides[slot] = item;
+    }
+
+    void clearOverrides() { overrides = null; }
+
+    public boolean isReopenPending() { return reopenTask != null; }
+    public int getReopenAttempts() { return reopenAttempts; }
+    public long getLastReopen() { return lastReopen; }
+
+    void setReopenTask(BukkitTask reopenTask) { this.reopenTask = reopenTask; }
+    void setReopenAttempts(int reopenAttempts) { this.reopenAttempts = reopenAttempts; }
+    void setLastReopen(long lastReopen) { this.lastReopen = lastReopen; }
+
+    void cancelReopen() {
+        if (reopenTask == null)
+            return;
+
+        reopenTask.cancel();
+        reopenTask = null;
+    }
+
+    // Kept across reopens of the same inventory, e.g. when changing page, and dropped for another one
+    public PageCache getPageCache(SmartInventory inventory) {
+        if (pageCacheOwner != inventory) {
+            pageCacheOwner = inventory;
+            pageCache = new PageCache(inventory.getPageCacheSize());
+        }
+
+        return pageCache;
+    }
+
+    Deque<InventoryContents> navigation(boolean create) {
+        if (navigation == null && create)
+            navigation = new LinkedList<>();
+
+        return navigation;
+    }
+
+    boolean isEmpty() {
+        return inventory == null && contents == null && (navigation == null || navigation.isEmpty());
+    }
+
+}
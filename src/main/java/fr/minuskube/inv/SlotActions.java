@@ -0,0 +1,53 @@
+package fr.minuskube.inv;
+
+import org.bukkit.event.inventory.InventoryClickEvent;
+
+import java.util.function.Consumer;
+
+// Click actions of a static inventory indexed by slot, shared by all of its viewers
+public final class SlotActions {
+
+    private final Consumer<InventoryClickEvent>[] actions;
+    private final boolean[] resync;
+
+    private SlotActions(Consumer<InventoryClickEvent>[] actions, boolean[] resync) {
+        this.actions = actions;
+        this.resync = resync;
+    }
+
+    // Slots without item, or with an empty one, are inert and their clicks don't resync the inventory
+    @SuppressWarnings("unchecked")
+    public static SlotActions compile(ClickableItem[] layout) {
+        Consumer<InventoryClickEvent>[] actions = new Consumer[layout.length];
+        boolean[] resync = new boolean[layout.length];
+
+        for (int slot = 0; slot < layout.length; slot++) {
+            ClickableItem item = layout[slot];
+
+            if (item == null || item.isInert())
+                continue;
+
+            actions[slot] = item::run;
+            resync[slot] = true;
+        }
+
+        return new SlotActions(actions, resync);
+    }
+
+    public SlotActions noResync(int slot) {
+        this.resync[slot] = false;
+        return this;
+    }
+
+    public void run(int slot, InventoryClickEvent e) {
+        if (slot >= 0 && slot < actions.length && actions[slot] != null)
+            actions[slot].accept(e);
+    }
+
+    public boolean needsResync(int slot) {
+        return slot >= 0 && slot < resync.length && resync[slot];
+    }
+
+    public int size() { return actions.length; }
+
+}
@@ -2,16 +2,25 @@ package fr.minuskube.inv;
 
 import fr.minuskube.inv.content.InventoryContents;
 import fr.minuskube.inv.content.InventoryProvider;
+import fr.minuskube.inv.metrics.AllocationProfiler;
 import fr.minuskube.inv.opener.InventoryOpener;
+import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.event.Event;
 import org.bukkit.event.inventory.InventoryCloseEvent;
 import org.bukkit.event.inventory.InventoryType;
 import org.bukkit.inventory.Inventory;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.java.JavaPlugin;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 @SuppressWarnings("unchecked")
 public class SmartInventory {
@@ -21,9 +30,24 @@ public class SmartInventory {
     private InventoryType type;
     private int rows, columns;
     private boolean closeable;
+    private boolean sharded;
+    private boolean shared;
+    private boolean critical;
+    private long idleTimeout;
+    private long prepareTtl;
+    private int pageCacheSize;
+    private int expectedViewers, expectedItems;
 
     private InventoryProvider provider;
     private SmartInventory parent;
+    private Plugin owner;
+    private SlotActions slotActions;
+
+    // Created by the first viewer and rendered to every viewer, until the inventory is torn down
+    private InventoryContents sharedContents;
+
+    // Contents built ahead of time by prepare, waiting for the player to open the inventory
+    private final Map<UUID, Prepared> prepared = new ConcurrentHashMap<>();
 
     private List<InventoryListener<? extends Event>> listeners;
     private InventoryManager manager;
@@ -34,16 +58,27 @@ public class SmartInventory {
 
     public Inventory open(Player player) { return open(player, 0); }
     public Inventory open(Player player, int page) {
-        Optional<SmartInventory> oldInv = this.manager.getInventory(player);
+        checkPage(page);
 
-        oldInv.ifPresent(inv -> {
-            inv.getListeners().stream()
-                    .filter(listener -> listener.getType() == InventoryCloseEvent.class)
-                    .forEach(listener -> ((InventoryListener<InventoryCloseEvent>) listener)
-                            .accept(new InventoryCloseEvent(player.getOpenInventory())));
+        SmartInventory oldInv = closeCurrent(player);
 
-            this.manager.setInventory(player, null);
-        });
+        // Keep the parent's contents around so that back() can restore them without calling init again
+        if (oldInv != null && oldInv == this.parent)
+            this.manager.getContents(player).ifPresent(oldContents -> this.manager.pushNavigation(player, oldContents));
+        else if (oldInv != this)
+            this.manager.clearNavigation(player);
+
+        if (this.shared && this.sharedContents != null)
+            return restore(player, this.sharedContents);
+
+        Optional<InventoryContents> preparedContents = takePrepared(player, page);
+
+        if (preparedContents.isPresent()) {
+            if (this.shared)
+                this.sharedContents = preparedContents.get();
+
+            return restore(player, preparedContents.get());
+        }
 
         InventoryContents contents = new InventoryContents.Impl(this, player.getUniqueId());
         contents.pagination().page(page);
@@ -51,26 +86,214 @@ public class SmartInventory {
         this.manager.setContents(player, contents);
 
         try {
-            this.provider.init(player, contents);
+            init(player, contents);
 
             // If the current inventory has been closed or replaced within the init method, returns
             if (!this.manager.getContents(player).equals(Optional.of(contents))) {
                 return null;
             }
 
-            InventoryOpener opener = this.manager.findOpener(type)
-                    .orElseThrow(() -> new IllegalStateException("No opener found for the inventory type " + type.name()));
-            Inventory handle = opener.open(this, player);
+            if (this.shared)
+                this.sharedContents = contents;
+
+            return show(player);
+        } catch (Exception e) {
+            this.manager.handleInventoryOpenError(this, player, e);
+            return null;
+        }
+    }
+
+    // Opens the inventory at the start of the next tick, before any background work of the manager
+    public void openLater(Player player) { openLater(player, 0); }
+    public void openLater(Player player, int page) {
+        this.manager.getWorkQueue().submit(WorkQueue.Priority.INTERACTIVE, () -> {
+            if (player.isOnline())
+                open(player, page);
+        });
+    }
+
+    public void prepare(Player player) { prepare(player, 0); }
+    public void prepare(Player player, int page) {
+        checkPage(page);
+
+        try {
+            storePrepared(player, page, build(player, page));
+        } catch (Exception e) {
+            this.manager.handleInventoryPrepareError(this, player, e);
+        }
+    }
+
+    // The provider's init then runs off the main thread, and must not use the Bukkit API beyond the contents.
+    // The contents stay detached from the manager until opened: nothing is sent, and bindings and panes wait
+    public CompletableFuture<InventoryContents> prepareAsync(Player player) { return prepareAsync(player, 0); }
+    public CompletableFuture<InventoryContents> prepareAsync(Player player, int page) {
+        checkPage(page);
+
+        CompletableFuture<InventoryContents> future = new CompletableFuture<>();
+
+        Bukkit.getScheduler().runTaskAsynchronously(this.manager.getPlugin(), () -> {
+            try {
+                InventoryContents.Impl contents = build(player, page);
+                storePrepared(player, page, contents);
+
+                future.complete(contents);
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        });
+
+        return future;
+    }
+
+    // All the viewers of a shared inventory see the same page, changed through its pagination
+    private void checkPage(int page) {
+        if (this.shared && page != 0)
+            throw new IllegalArgumentException("A shared inventory can't be opened at a given page.");
+    }
+
+    private InventoryContents.Impl build(Player player, int page) {
+        InventoryContents.Impl contents = new InventoryContents.Impl(this, player.getUniqueId());
+        contents.pagination().page(page);
+
+        // Half-built contents may already have bound state
+        try {
+            init(player, contents);
+        } catch (RuntimeException e) {
+            this.manager.discardContents(contents);
+            throw e;
+        }
+
+        return contents;
+    }
+
+    private void init(Player player, InventoryContents contents) {
+        AllocationProfiler profiler = this.manager.profiler();
+        long mark = profiler != null ? profiler.mark() : -1;
+
+        this.provider.init(player, contents);
+
+        if (profiler != null)
+            profiler.record(this.id, AllocationProfiler.Phase.INIT, mark);
+    }
+
+    private void storePrepared(Player player, int page, InventoryContents.Impl contents) {
+        long expiry = System.currentTimeMillis() + this.prepareTtl * 50;
+        Prepared old = this.prepared.put(player.getUniqueId(), new Prepared(contents, page, expiry));
+
+        if (old != null)
+            this.manager.discardContents(old.contents);
+
+        this.manager.trackPrepared(this);
+    }
+
+    // Drops what players never opened in time, returns whether nothing is left prepared
+    boolean evictPrepared(long now) {
+        this.prepared.values().removeIf(old -> {
+            if (old.expiry > now)
+                return false;
+
+            this.manager.discardContents(old.contents);
+            return true;
+        });
+
+        return this.prepared.isEmpty();
+    }
+
+    void discardPrepared(UUID player) {
+        Prepared old = this.prepared.remove(player);
+
+        if (old != null)
+            this.manager.discardContents(old.contents);
+    }
+
+    void discardPrepared() {
+        this.prepared.values().forEach(old -> this.manager.discardContents(old.contents));
+        this.prepared.clear();
+    }
+
+    private Optional<InventoryContents> takePrepared(Player player, int page) {
+        if (this.prepared.isEmpty())
+            return Optional.empty();
+
+        Prepared prepared = this.prepared.remove(player.getUniqueId());
+
+        if (prepared == null)
+            return Optional.empty();
+
+        if (prepared.page != page || prepared.expiry <= System.currentTimeMillis()) {
+            this.manager.discardContents(prepared.contents);
+            return Optional.empty();
+        }
+
+        prepared.contents.attach();
+        return Optional.of(prepared.contents);
+    }
+
+    public Inventory back(Player player) {
+        if (this.parent == null) {
+            close(player);
+            return null;
+        }
+
+        Optional<InventoryContents> snapshot = this.manager.popNavigation(player, this.parent);
+
+        if (!snapshot.isPresent())
+            return this.parent.open(player);
+
+        return this.parent.restore(player, snapshot.get());
+    }
+
+    private Inventory restore(Player player, InventoryContents contents) {
+        closeCurrent(player);
+
+        // A snapshot of shared contents may have been released by a teardown since, and replaced by other viewers
+        if (this.shared) {
+            if (this.sharedContents == null) {
+                this.sharedContents = contents;
+
+                if (contents instanceof InventoryContents.Impl)
+                    ((InventoryContents.Impl) contents).rebind();
+            }
+
+            contents = this.sharedContents;
+        }
 
-            this.manager.setInventory(player, this);
+        this.manager.setContents(player, contents);
 
-            return handle;
+        try {
+            return show(player);
         } catch (Exception e) {
             this.manager.handleInventoryOpenError(this, player, e);
             return null;
         }
     }
 
+    private SmartInventory closeCurrent(Player player) {
+        Optional<SmartInventory> oldInv = this.manager.getInventory(player);
+
+        oldInv.ifPresent(inv -> {
+            inv.getListeners().stream()
+                    .filter(listener -> listener.getType() == InventoryCloseEvent.class)
+                    .forEach(listener -> ((InventoryListener<InventoryCloseEvent>) listener)
+                            .accept(new InventoryCloseEvent(player.getOpenInventory())));
+
+            this.manager.setInventory(player, null);
+        });
+
+        return oldInv.orElse(null);
+    }
+
+    private Inventory show(Player player) {
+        InventoryOpener opener = this.manager.findOpener(type)
+                .orElseThrow(() -> new IllegalStateException("No opener found for the inventory type " + type.name()));
+        Inventory handle = opener.open(this, player);
+
+        this.manager.setInventory(player, this, handle);
+        this.manager.flush(player);
+
+        return handle;
+    }
+
     @SuppressWarnings("unchecked")
     public void close(Player player) {
         listeners.stream()
@@ -82,6 +305,7 @@ public class SmartInventory {
         player.closeInventory();
 
         this.manager.setContents(player, null);
+        this.manager.clearNavigation(player);
     }
 
     public String getId() { return id; }
@@ -93,9 +317,39 @@ public class SmartInventory {
     public boolean isCloseable() { return closeable; }
     public void setCloseable(boolean closeable) { this.closeable = closeable; }
 
+    public boolean isSharded() { return sharded; }
+    public boolean isShared() { return shared; }
+    public boolean isCritical() { return critical; }
+
+    public Optional<InventoryContents> getSharedContents() { return Optional.ofNullable(sharedContents); }
+
+    InventoryContents releaseSharedContents() {
+        InventoryContents contents = this.sharedContents;
+        this.sharedContents = null;
+
+        return contents;
+    }
+
+    public void setOverride(Player player, int row, int column, ClickableItem item) {
+        this.manager.setOverride(player, row, column, item);
+    }
+
+    public void clearOverride(Player player, int row, int column) {
+        this.manager.clearOverride(player, row, column);
+    }
+
+    public long getIdleTimeout() { return idleTimeout; }
+    public long getPrepareTtl() { return prepareTtl; }
+    public int getPageCacheSize() { return pageCacheSize; }
+
+    public int getExpectedViewers() { return expectedViewers; }
+    public int getExpectedItems() { return expectedItems; }
+
     public InventoryProvider getProvider() { return provider; }
     public Optional<SmartInventory> getParent() { return Optional.ofNullable(parent); }
 
+    public Plugin getOwner() { return owner; }
+    public SlotActions getSlotActions() { return slotActions; }
     public InventoryManager getManager() { return manager; }
 
     List<InventoryListener<? extends Event>> getListeners() { return listeners; }
@@ -109,12 +363,22 @@ public class SmartInventory {
         private InventoryType type = InventoryType.CHEST;
         private int rows = 6, columns = 9;
         private boolean closeable = true;
+        private boolean sharded = false;
+        private boolean shared = false;
+        private boolean critical = false;
+        private long idleTimeout = 0;
+        private long prepareTtl = 600;
+        private int pageCacheSize = 0;
+        private int expectedViewers = 0, expectedItems = 0;
 
         private InventoryManager manager;
         private InventoryProvider provider;
         private SmartInventory parent;
+        private Plugin owner;
+        private SlotActions slotActions;
 
-        private List<InventoryListener<? extends Event>> listeners = new ArrayList<>();
+        // Most inventories have no listener, the list is only allocated for the first one
+        private List<InventoryListener<? extends Event>> listeners;
 
         private Builder() {}
 
@@ -144,6 +408,51 @@ public class SmartInventory {
             return this;
         }
 
+        // A single contents, initialized for the first viewer, is shown to all of them
+        public Builder shared(boolean shared) {
+            this.shared = shared;
+            return this;
+        }
+
+        // Critical inventories keep being updated every tick, and animated, while the server lags
+        public Builder critical(boolean critical) {
+            this.critical = critical;
+            return this;
+        }
+
+        public Builder sharded(boolean sharded) {
+            this.sharded = sharded;
+            return this;
+        }
+
+        // Pages rendered by Pagination#addToIterator are kept per player and written back at once when revisited
+        public Builder pageCache(int pages) {
+            this.pageCacheSize = pages;
+            return this;
+        }
+
+        public Builder prepareTtl(long ticks) {
+            this.prepareTtl = ticks;
+            return this;
+        }
+
+        // Capacity hints, used to size the manager, the viewers set and the pagination index once
+        // instead of growing them on demand
+        public Builder expectedViewers(int viewers) {
+            this.expectedViewers = viewers;
+            return this;
+        }
+
+        public Builder expectedItems(int items) {
+            this.expectedItems = items;
+            return this;
+        }
+
+        public Builder idleTimeout(long ticks) {
+            this.idleTimeout = ticks;
+            return this;
+        }
+
         public Builder provider(InventoryProvider provider) {
             this.provider = provider;
             return this;
@@ -155,10 +464,24 @@ public class SmartInventory {
         }
 
         public Builder listener(InventoryListener<? extends Event> listener) {
+            if(this.listeners == null)
+                this.listeners = new ArrayList<>(2);
+
             this.listeners.add(listener);
             return this;
         }
 
+        // Clicks are then handled from this table only, without going through each viewer's contents
+        public Builder slotActions(SlotActions slotActions) {
+            this.slotActions = slotActions;
+            return this;
+        }
+
+        public Builder owner(Plugin owner) {
+            this.owner = owner;
+            return this;
+        }
+
         public Builder manager(InventoryManager manager) {
             this.manager = manager;
             return this;
@@ -181,12 +504,48 @@ public class SmartInventory {
             inv.rows = this.rows;
             inv.columns = this.columns;
             inv.closeable = this.closeable;
+            inv.sharded = this.sharded;
+            inv.shared = this.shared;
+            inv.critical = this.critical;
+            inv.idleTimeout = this.idleTimeout;
+            inv.prepareTtl = this.prepareTtl;
+            inv.pageCacheSize = this.pageCacheSize;
             inv.provider = this.provider;
             inv.parent = this.parent;
-            inv.listeners = this.listeners;
+            inv.slotActions = this.slotActions;
+            inv.expectedViewers = this.expectedViewers;
+            inv.expectedItems = this.expectedItems;
+            inv.listeners = this.listeners != null ? this.listeners : Collections.emptyList();
+            inv.owner = this.owner != null ? this.owner : findOwner(this.provider, manager);
+
+            if(inv.expectedViewers > 0)
+                manager.requestCapacity(inv.expectedViewers);
 
             return inv;
         }
+
+        // The plugin whose class loader loaded the provider, or the manager's plugin when used as a library
+        private static Plugin findOwner(InventoryProvider provider, InventoryManager manager) {
+            try {
+                return JavaPlugin.getProvidingPlugin(provider.getClass());
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                return manager.getPlugin();
+            }
+        }
+    }
+
+    private static final class Prepared {
+
+        private final InventoryContents.Impl contents;
+        private final int page;
+        private final long expiry;
+
+        private Prepared(InventoryContents.Impl contents, int page, long expiry) {
+            this.contents = contents;
+            this.page = page;
+            this.expiry = expiry;
+        }
+
     }
 
 }
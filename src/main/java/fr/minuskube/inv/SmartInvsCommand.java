@@ -0,0 +1,90 @@
+package fr.minuskube.inv;
+
+import fr.minuskube.inv.metrics.AllocationProfiler;
+import fr.minuskube.inv.render.BukkitRenderer;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+class SmartInvsCommand implements CommandExecutor {
+
+    private final InventoryManager manager;
+
+    SmartInvsCommand(InventoryManager manager) {
+        this.manager = manager;
+    }
+
+    @Override
+    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        if (args.length == 1 && args[0].equalsIgnoreCase("stats")) {
+            sender.sendMessage("Non-closeable reopens scheduled: " + manager.getReopens() + ".");
+
+            if (manager.getRenderer() instanceof BukkitRenderer)
+                sender.sendMessage("Unchanged slot writes skipped: "
+                        + ((BukkitRenderer) manager.getRenderer()).getSkippedWrites() + ".");
+
+            sender.sendMessage(String.format(Locale.ROOT, "Degradation level: %s (average tick of %.1f ms).",
+                    manager.getDegradationLevel().name(), manager.getAverageTickTime()));
+
+            WorkQueue queue = manager.getWorkQueue();
+
+            for (WorkQueue.Priority priority : WorkQueue.Priority.values())
+                sender.sendMessage("Work queue " + priority.name().toLowerCase(Locale.ROOT) + ": " + queue.getDepth(priority)
+                        + " pending, " + queue.getAverageLatency(priority, TimeUnit.MICROSECONDS) + " us average latency, "
+                        + queue.getMaxLatency(priority, TimeUnit.MICROSECONDS) + " us max.");
+            return true;
+        }
+
+        if (args.length < 2 || !args[0].equalsIgnoreCase("profile"))
+            return false;
+
+        switch (args[1].toLowerCase(Locale.ROOT)) {
+            case "on":
+                long interval;
+
+                try {
+                    interval = args.length > 2 ? Long.parseLong(args[2]) : 0;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+
+                manager.enableProfiling(interval);
+
+                sender.sendMessage("Allocation profiling enabled.");
+                return true;
+            case "off":
+                manager.disableProfiling();
+
+                sender.sendMessage("Allocation profiling disabled.");
+                return true;
+            case "show":
+                Optional<AllocationProfiler> profiler = manager.getProfiler();
+
+                if (!profiler.isPresent()) {
+                    sender.sendMessage("Allocation profiling is not enabled.");
+                    return true;
+                }
+
+                List<String> lines = profiler.get().summary();
+
+                if (lines.isEmpty())
+                    sender.sendMessage("No allocations recorded yet.");
+                else
+                    lines.forEach(sender::sendMessage);
+                return true;
+            case "reset":
+                manager.getProfiler().ifPresent(AllocationProfiler::reset);
+
+                sender.sendMessage("Allocation profiling data reset.");
+                return true;
+            default:
+                return false;
+        }
+    }
+
+}
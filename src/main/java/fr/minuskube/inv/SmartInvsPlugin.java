@@ -13,6 +13,8 @@ public class SmartInvsPlugin extends JavaPlugin {
 
         invManager = new InventoryManager(this);
         invManager.init();
+
+        getCommand("smartinvs").setExecutor(new SmartInvsCommand(invManager));
     }
 
     public static InventoryManager manager() { return invManager; }
@@ -0,0 +1,126 @@
+package fr.minuskube.inv;
+
+import org.bukkit.Bukkit;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+// Work to run on the main thread, drained by the manager at the start of each tick within a time slice
+public class WorkQueue {
+
+    public enum Priority {
+        INTERACTIVE,
+        NORMAL,
+        BACKGROUND
+    }
+
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    private final Queue<Task>[] queues;
+    private final AtomicInteger[] depths;
+
+    private long timeSlice = TimeUnit.MILLISECONDS.toNanos(2);
+
+    // Time spent waiting in the queue, only updated on the main thread
+    private final long[] totalLatency = new long[PRIORITIES.length];
+    private final long[] maxLatency = new long[PRIORITIES.length];
+    private final long[] completed = new long[PRIORITIES.length];
+
+    @SuppressWarnings("unchecked")
+    public WorkQueue() {
+        this.queues = new Queue[PRIORITIES.length];
+        this.depths = new AtomicInteger[PRIORITIES.length];
+
+        for (int i = 0; i < PRIORITIES.length; i++) {
+            this.queues[i] = new ConcurrentLinkedQueue<>();
+            this.depths[i] = new AtomicInteger();
+        }
+    }
+
+    // Can be called from any thread
+    public void submit(Priority priority, Runnable runnable) {
+        this.queues[priority.ordinal()].add(new Task(runnable, System.nanoTime()));
+        this.depths[priority.ordinal()].incrementAndGet();
+    }
+
+    public void setTimeSlice(long duration, TimeUnit unit) { this.timeSlice = unit.toNanos(duration); }
+    public long getTimeSlice(TimeUnit unit) { return unit.convert(timeSlice, TimeUnit.NANOSECONDS); }
+
+    public int getDepth(Priority priority) { return depths[priority.ordinal()].get(); }
+
+    public int getDepth() {
+        int depth = 0;
+
+        for (AtomicInteger priorityDepth : depths)
+            depth += priorityDepth.get();
+
+        return depth;
+    }
+
+    public long getAverageLatency(Priority priority, TimeUnit unit) {
+        int index = priority.ordinal();
+        return completed[index] == 0 ? 0 : unit.convert(totalLatency[index] / completed[index], TimeUnit.NANOSECONDS);
+    }
+
+    public long getMaxLatency(Priority priority, TimeUnit unit) {
+        return unit.convert(maxLatency[priority.ordinal()], TimeUnit.NANOSECONDS);
+    }
+
+    public void resetStats() {
+        for (int i = 0; i < PRIORITIES.length; i++) {
+            totalLatency[i] = 0;
+            maxLatency[i] = 0;
+            completed[i] = 0;
+        }
+    }
+
+    // Higher priorities first, at least one task is run per drain so that nothing starves
+    void drain() {
+        long start = System.nanoTime();
+        boolean ranAny = false;
+
+        for (int i = 0; i < PRIORITIES.length; i++) {
+            Task task;
+
+            while ((!ranAny || System.nanoTime() - start < timeSlice) && (task = queues[i].poll()) != null) {
+                depths[i].decrementAndGet();
+                ranAny = true;
+
+                long latency = System.nanoTime() - task.submitted;
+
+                totalLatency[i] += latency;
+                maxLatency[i] = Math.max(maxLatency[i], latency);
+                completed[i]++;
+
+                try {
+                    task.runnable.run();
+                } catch (Exception e) {
+                    Bukkit.getLogger().log(Level.SEVERE, "Error while running a SmartInvs task:", e);
+                }
+            }
+        }
+    }
+
+    void clear() {
+        for (int i = 0; i < PRIORITIES.length; i++) {
+            queues[i].clear();
+            depths[i].set(0);
+        }
+    }
+
+    private static final class Task {
+
+        private final Runnable runnable;
+        private final long submitted;
+
+        private Task(Runnable runnable, long submitted) {
+            this.runnable = runnable;
+            this.submitted = submitted;
+        }
+
+    }
+
+}
@@ -0,0 +1,27 @@
+package fr.minuskube.inv.config;
+
+import fr.minuskube.inv.ClickableItem;
+import fr.minuskube.inv.content.InventoryContents;
+import fr.minuskube.inv.content.InventoryProvider;
+import org.bukkit.entity.Player;
+
+class CompiledMenuProvider implements InventoryProvider {
+
+    // Indexed by slot, items and their actions are resolved once when the menu is compiled
+    private final ClickableItem[] layout;
+    private final int columns;
+
+    CompiledMenuProvider(ClickableItem[] layout, int columns) {
+        this.layout = layout;
+        this.columns = columns;
+    }
+
+    @Override
+    public void init(Player player, InventoryContents contents) {
+        for(int slot = 0; slot < layout.length; slot++) {
+            if(layout[slot] != null)
+                contents.set(slot / columns, slot % columns, layout[slot]);
+        }
+    }
+
+}
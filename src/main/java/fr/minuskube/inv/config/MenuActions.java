@@ -0,0 +1,28 @@
+package fr.minuskube.inv.config;
+
+import org.bukkit.event.inventory.InventoryClickEvent;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+public class MenuActions {
+
+    // Menus are compiled on the watcher thread, so actions may be looked up concurrently
+    private final Map<String, Consumer<InventoryClickEvent>> actions = new ConcurrentHashMap<>();
+
+    public MenuActions register(String name, Consumer<InventoryClickEvent> action) {
+        actions.put(name, action);
+        return this;
+    }
+
+    public void unregister(String name) {
+        actions.remove(name);
+    }
+
+    public Optional<Consumer<InventoryClickEvent>> get(String name) {
+        return Optional.ofNullable(actions.get(name));
+    }
+
+}
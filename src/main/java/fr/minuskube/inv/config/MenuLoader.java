@@ -0,0 +1,325 @@
+package fr.minuskube.inv.config;
+
+import fr.minuskube.inv.ClickableItem;
+import fr.minuskube.inv.InventoryManager;
+import fr.minuskube.inv.SlotActions;
+import fr.minuskube.inv.SmartInventory;
+import fr.minuskube.inv.WorkQueue;
+import fr.minuskube.inv.content.Layout;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.plugin.Plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+public class MenuLoader {
+
+    private static final String EXTENSION = ".yml";
+    private static final long RELOAD_DELAY = 100;
+
+    private final InventoryManager manager;
+    private final Plugin owner;
+    private final File directory;
+    private final MenuActions actions;
+
+    // Only modified on the main thread
+    private final Map<String, SmartInventory> menus = new HashMap<>();
+    private final Map<Path, String> files = new HashMap<>();
+
+    private WatchService watchService;
+    private Thread watcher;
+
+    public MenuLoader(InventoryManager manager, File directory) {
+        this(manager, manager.getPlugin(), directory);
+    }
+
+    public MenuLoader(InventoryManager manager, File directory, MenuActions actions) {
+        this(manager, manager.getPlugin(), directory, actions);
+    }
+
+    // The owner is the plugin registering the actions, whose menus are closed when it is disabled
+    public MenuLoader(InventoryManager manager, Plugin owner, File directory) {
+        this(manager, owner, directory, new MenuActions());
+    }
+
+    public MenuLoader(InventoryManager manager, Plugin owner, File directory, MenuActions actions) {
+        this.manager = manager;
+        this.owner = owner;
+        this.directory = directory;
+        this.actions = actions;
+    }
+
+    public Plugin getOwner() { return owner; }
+    public MenuActions getActions() { return actions; }
+
+    public Optional<SmartInventory> getMenu(String id) {
+        return Optional.ofNullable(menus.get(id));
+    }
+
+    public Set<String> getMenuIds() {
+        return Collections.unmodifiableSet(menus.keySet());
+    }
+
+    public void loadAll() {
+        File[] list = directory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+
+        if(list == null)
+            return;
+
+        for(File file : list) {
+            try {
+                swap(file.toPath(), compile(file));
+            } catch(Exception e) {
+                Bukkit.getLogger().log(Level.SEVERE, "Error while loading menu " + file.getName() + ":", e);
+            }
+        }
+    }
+
+    public SmartInventory compile(File file) {
+        String name = file.getName();
+        String id = name.endsWith(EXTENSION) ? name.substring(0, name.length() - EXTENSION.length()) : name;
+
+        return compile(id, YamlConfiguration.loadConfiguration(file));
+    }
+
+    public SmartInventory compile(String defaultId, ConfigurationSection config) {
+        String id = config.getString("id", defaultId);
+        String parent = config.getString("parent");
+
+        // The size then comes from the mask, whose characters can be used in place of slots for the items
+        Layout mask = config.contains("layout") ? Layout.of(config.getStringList("layout").toArray(new String[0])) : null;
+
+        int rows = mask != null ? mask.getRows() : config.getInt("rows", 6);
+        int columns = mask != null ? mask.getColumns() : config.getInt("columns", 9);
+
+        ClickableItem[] layout = new ClickableItem[rows * columns];
+        ConfigurationSection items = config.getConfigurationSection("items");
+
+        if(items != null) {
+            for(String key : items.getKeys(false)) {
+                ConfigurationSection section = items.getConfigurationSection(key);
+
+                if(section == null)
+                    throw new IllegalArgumentException("The item " + key + " of the menu " + id + " is not a section.");
+
+                ClickableItem item = compileItem(id, parent, key, section);
+
+                for(int slot : slots(id, key, section, mask, rows, columns))
+                    layout[slot] = item;
+            }
+        }
+
+        return SmartInventory.builder()
+                .id(id)
+                .title(color(config.getString("title", "")))
+                .type(InventoryType.valueOf(config.getString("type", "CHEST").toUpperCase(Locale.ROOT)))
+                .size(rows, columns)
+                .closeable(config.getBoolean("closeable", true))
+                .provider(new CompiledMenuProvider(layout, columns))
+                .slotActions(SlotActions.compile(layout))
+                .owner(owner)
+                .manager(manager)
+                .build();
+    }
+
+    private ClickableItem compileItem(String id, String parent, String key, ConfigurationSection section) {
+        Material material = Material.matchMaterial(section.getString("material", ""));
+
+        if(material == null)
+            throw new IllegalArgumentException("Unknown material for the item " + key + " of the menu " + id + ".");
+
+        ItemStack stack = new ItemStack(material, section.getInt("amount", 1), (short) section.getInt("data", 0));
+        ItemMeta meta = stack.getItemMeta();
+
+        if(meta != null) {
+            if(section.contains("name"))
+                meta.setDisplayName(color(section.getString("name")));
+
+            if(section.contains("lore")) {
+                List<String> lore = new ArrayList<>();
+                section.getStringList("lore").forEach(line -> lore.add(color(line)));
+
+                meta.setLore(lore);
+            }
+
+            stack.setItemMeta(meta);
+        }
+
+        String action = section.getString("action");
+
+        if(action == null)
+            return ClickableItem.empty(stack);
+
+        return ClickableItem.of(stack, resolve(id, parent, key, action));
+    }
+
+    private Consumer<InventoryClickEvent> resolve(String id, String parent, String key, String action) {
+        if(action.equals("close"))
+            return e -> {
+                Player player = (Player) e.getWhoClicked();
+                manager.getInventory(player).ifPresent(inv -> inv.close(player));
+            };
+
+        // Menus are looked up when clicked, so that the latest version of the target menu is opened
+        if(action.equals("back")) {
+            if(parent == null)
+                throw new IllegalArgumentException("The back action of the item " + key + " needs a parent for the menu "
+                        + id + ".");
+
+            return e -> getMenu(parent).ifPresent(menu -> menu.open((Player) e.getWhoClicked()));
+        }
+
+        if(action.startsWith("open:")) {
+            String target = action.substring("open:".length());
+            return e -> getMenu(target).ifPresent(menu -> menu.open((Player) e.getWhoClicked()));
+        }
+
+        return actions.get(action).orElseThrow(() -> new IllegalArgumentException("Unknown action " + action
+                + " for the item " + key + " of the menu " + id + "."));
+    }
+
+    private int[] slots(String id, String key, ConfigurationSection section, Layout mask, int rows, int columns) {
+        int[] slots;
+        String symbol = section.getString("symbol", key.length() == 1 ? key : null);
+
+        if(mask != null && symbol != null && symbol.length() == 1
+                && !section.contains("slots") && !section.contains("slot") && !section.contains("row"))
+            slots = mask.slots(symbol.charAt(0));
+        else if(section.contains("slots"))
+            slots = section.getIntegerList("slots").stream().mapToInt(Integer::intValue).toArray();
+        else if(section.contains("slot"))
+            slots = new int[] { section.getInt("slot") };
+        else if(section.contains("row") && section.contains("column"))
+            slots = new int[] { section.getInt("row") * columns + section.getInt("column") };
+        else
+            throw new IllegalArgumentException("No slot set for the item " + key + " of the menu " + id + ".");
+
+        for(int slot : slots) {
+            if(slot < 0 || slot >= rows * columns)
+                throw new IllegalArgumentException("The slot " + slot + " of the item " + key
+                        + " is outside of the menu " + id + ".");
+        }
+
+        return slots;
+    }
+
+    private static String color(String text) {
+        return ChatColor.translateAlternateColorCodes('&', text);
+    }
+
+    private void swap(Path file, SmartInventory menu) {
+        String oldId = files.put(file, menu.getId());
+
+        if(oldId != null && !oldId.equals(menu.getId()))
+            menus.remove(oldId);
+
+        menus.put(menu.getId(), menu);
+    }
+
+    private void remove(Path file) {
+        String oldId = files.remove(file);
+
+        if(oldId != null)
+            menus.remove(oldId);
+    }
+
+    // Files are parsed on the watcher thread, only the swap of the compiled menus happens on the main thread
+    public void watch() {
+        if(watcher != null)
+            return;
+
+        try {
+            watchService = directory.toPath().getFileSystem().newWatchService();
+            directory.toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch(IOException e) {
+            throw new IllegalStateException("Could not watch the menus directory " + directory + ".", e);
+        }
+
+        watcher = new Thread(this::watchLoop, "SmartInvs Menu Watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    public void close() {
+        if(watcher == null)
+            return;
+
+        watcher.interrupt();
+        watcher = null;
+
+        try {
+            watchService.close();
+        } catch(IOException ignored) {}
+    }
+
+    private void watchLoop() {
+        try {
+            while(!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.take();
+
+                // Editors often save a file in several writes, let them settle before reading it
+                Thread.sleep(RELOAD_DELAY);
+
+                Set<Path> changed = new HashSet<>();
+
+                for(; key != null; key = watchService.poll()) {
+                    for(WatchEvent<?> event : key.pollEvents()) {
+                        if(event.context() instanceof Path && event.context().toString().endsWith(EXTENSION))
+                            changed.add(directory.toPath().resolve((Path) event.context()));
+                    }
+
+                    key.reset();
+                }
+
+                changed.forEach(this::reload);
+            }
+        } catch(InterruptedException | ClosedWatchServiceException ignored) {}
+    }
+
+    private void reload(Path file) {
+        if(!file.toFile().exists()) {
+            sync(() -> remove(file));
+            return;
+        }
+
+        try {
+            SmartInventory menu = compile(file.toFile());
+            sync(() -> swap(file, menu));
+        } catch(Exception e) {
+            Bukkit.getLogger().log(Level.SEVERE, "Error while reloading menu " + file.getFileName() + ":", e);
+        }
+    }
+
+    private void sync(Runnable task) {
+        if(manager.getPlugin().isEnabled())
+            manager.getWorkQueue().submit(WorkQueue.Priority.BACKGROUND, task);
+    }
+
+}
@@ -0,0 +1,28 @@
+package fr.minuskube.inv.content;
+
+import fr.minuskube.inv.ClickableItem;
+
+final class ArrayPaginationSource implements PaginationSource {
+
+    private final ClickableItem[] items;
+
+    ArrayPaginationSource(ClickableItem[] items) {
+        this.items = items;
+    }
+
+    @Override
+    public int size() { return items.length; }
+
+    @Override
+    public ClickableItem get(int index) { return items[index]; }
+
+    // Sources of the same array are interchangeable, e.g. for the page cache across reopens
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof ArrayPaginationSource && ((ArrayPaginationSource) obj).items == items;
+    }
+
+    @Override
+    public int hashCode() { return System.identityHashCode(items); }
+
+}
@@ -1,16 +1,16 @@
 package fr.minuskube.inv.content;
 
 import fr.minuskube.inv.ClickableItem;
+import fr.minuskube.inv.InventorySession;
 import fr.minuskube.inv.SmartInventory;
 import org.bukkit.Bukkit;
-import org.bukkit.entity.Player;
-import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Function;
 
 public interface InventoryContents {
 
@@ -25,6 +25,18 @@ public interface InventoryContents {
     SlotIterator newIterator(String id, SlotIterator.Type type, SlotPos startPos);
     SlotIterator newIterator(SlotIterator.Type type, SlotPos startPos);
 
+    SlotIterator newIterator(SlotIterator.Type type, int fromRow, int fromColumn, int toRow, int toColumn);
+    SlotIterator newIterator(SlotPos... slots);
+
+    SlotIterator newIterator(String id, Layout layout, char group);
+    SlotIterator newIterator(Layout layout, char group);
+
+    Panes panes();
+    Panes panesIfPresent();
+
+    ScrollView newScrollView(int fromRow, int fromColumn, int toRow, int toColumn);
+    ScrollView newScrollView(SlotPos fromPos, SlotPos toPos);
+
     ClickableItem[][] all();
 
     Optional<SlotPos> firstEmpty();
@@ -42,6 +54,8 @@ public interface InventoryContents {
     InventoryContents fillColumn(int column, ClickableItem item);
     InventoryContents fillBorders(ClickableItem item);
 
+    InventoryContents apply(Layout layout);
+
     InventoryContents fillRect(int fromRow, int fromColumn,
                                int toRow, int toColumn, ClickableItem item);
     InventoryContents fillRect(SlotPos fromPos, SlotPos toPos, ClickableItem item);
@@ -51,6 +65,16 @@ public interface InventoryContents {
 
     InventoryContents setProperty(String name, Object value);
 
+    <T> T property(PropertyKey<T> key);
+    <T> T property(PropertyKey<T> key, T def);
+
+    <T> InventoryContents setProperty(PropertyKey<T> key, T value);
+
+    InventoryContents bind(int row, int column, String key, Function<Optional<String>, ClickableItem> renderer);
+    InventoryContents bind(SlotPos slotPos, String key, Function<Optional<String>, ClickableItem> renderer);
+
+    InventoryContents refresh(String key);
+
     class Impl implements InventoryContents {
 
         private SmartInventory inv;
@@ -58,24 +82,63 @@ public interface InventoryContents {
 
         private ClickableItem[][] contents;
 
-        private Pagination pagination = new Pagination.Impl();
-        private Map<String, SlotIterator> iterators = new HashMap<>();
-        private Map<String, Object> properties = new HashMap<>();
+        // Allocated on first use, most inventories never touch them
+        private Pagination pagination;
+        private SmallMap<String, SlotIterator> iterators;
+        private SmallMap<Object, Object> properties;
+        private SmallMap<String, List<StateBinding>> bindings;
+        private Panes panes;
+
+        // Prepared off the main thread, these contents don't use the manager until they are opened
+        private boolean detached;
 
         public Impl(SmartInventory inv, UUID player) {
             this.inv = inv;
             this.player = player;
             this.contents = new ClickableItem[inv.getRows()][inv.getColumns()];
+            this.detached = !Bukkit.isPrimaryThread();
+        }
+
+        // Called on the main thread before the contents are opened, to register what was deferred
+        public void attach() {
+            if(!detached)
+                return;
+
+            detached = false;
+            rebind();
+
+            if(panes != null)
+                panes.update(Bukkit.getPlayer(player));
+        }
+
+        // Registers the bindings with the manager again, e.g. for shared contents reused after a teardown,
+        // refreshing them since the state may have changed meanwhile
+        public void rebind() {
+            if(bindings == null)
+                return;
+
+            for(int i = 0; i < bindings.size(); i++) {
+                inv.getManager().bindState(bindings.keyAt(i), this);
+                refresh(bindings.keyAt(i));
+            }
         }
 
         @Override
         public SmartInventory inventory() { return inv; }
 
         @Override
-        public Pagination pagination() { return pagination; }
+        public Pagination pagination() {
+            if(pagination == null)
+                pagination = new Pagination.Impl(this);
+
+            return pagination;
+        }
 
         @Override
         public Optional<SlotIterator> iterator(String id) {
+            if(iterators == null)
+                return Optional.empty();
+
             return Optional.ofNullable(this.iterators.get(id));
         }
 
@@ -84,6 +147,9 @@ public interface InventoryContents {
             SlotIterator iterator = new SlotIterator.Impl(this, inv,
                     type, startRow, startColumn);
 
+            if(this.iterators == null)
+                this.iterators = new SmallMap<>();
+
             this.iterators.put(id, iterator);
             return iterator;
         }
@@ -103,6 +169,55 @@ public interface InventoryContents {
             return newIterator(type, startPos.getRow(), startPos.getColumn());
         }
 
+        @Override
+        public SlotIterator newIterator(SlotIterator.Type type, int fromRow, int fromColumn, int toRow, int toColumn) {
+            return new SlotIterator.Impl(this, inv,
+                    SlotOrders.regionOrder(type, inv.getRows(), inv.getColumns(), fromRow, fromColumn, toRow, toColumn));
+        }
+
+        @Override
+        public SlotIterator newIterator(SlotPos... slots) {
+            return new SlotIterator.Impl(this, inv, SlotOrders.custom(inv.getRows(), inv.getColumns(), slots));
+        }
+
+        @Override
+        public SlotIterator newIterator(String id, Layout layout, char group) {
+            SlotIterator iterator = newIterator(layout, group);
+
+            if(this.iterators == null)
+                this.iterators = new SmallMap<>();
+
+            this.iterators.put(id, iterator);
+            return iterator;
+        }
+
+        @Override
+        public SlotIterator newIterator(Layout layout, char group) {
+            return new SlotIterator.Impl(this, inv, layout.group(group, inv.getColumns()));
+        }
+
+        @Override
+        public Panes panes() {
+            if(panes == null)
+                panes = new Panes(this, player);
+
+            return panes;
+        }
+
+        // Null until a pane has been added, for the manager to skip contents without any
+        @Override
+        public Panes panesIfPresent() { return panes; }
+
+        @Override
+        public ScrollView newScrollView(int fromRow, int fromColumn, int toRow, int toColumn) {
+            return new ScrollView.Impl(this, fromRow, fromColumn, toRow, toColumn);
+        }
+
+        @Override
+        public ScrollView newScrollView(SlotPos fromPos, SlotPos toPos) {
+            return newScrollView(fromPos.getRow(), fromPos.getColumn(), toPos.getRow(), toPos.getColumn());
+        }
+
         @Override
         public ClickableItem[][] all() { return contents; }
 
@@ -198,6 +313,19 @@ public interface InventoryContents {
             return this;
         }
 
+        @Override
+        public InventoryContents apply(Layout layout) {
+            ClickableItem[] items = layout.compiled();
+            int columns = layout.getColumns();
+
+            for(int slot = 0; slot < items.length; slot++) {
+                if(items[slot] != null)
+                    set(slot / columns, slot % columns, items[slot]);
+            }
+
+            return this;
+        }
+
         @Override
         public InventoryContents fillRect(int fromRow, int fromColumn, int toRow, int toColumn, ClickableItem item) {
             for(int row = fromRow; row <= toRow; row++) {
@@ -217,31 +345,157 @@ public interface InventoryContents {
             return fillRect(fromPos.getRow(), fromPos.getColumn(), toPos.getRow(), toPos.getColumn(), item);
         }
 
-        @SuppressWarnings("unchecked")
         @Override
         public <T> T property(String name) {
-            return (T) properties.get(name);
+            return getProperty(name, null);
         }
 
-        @SuppressWarnings("unchecked")
         @Override
         public <T> T property(String name, T def) {
-            return properties.containsKey(name) ? (T) properties.get(name) : def;
+            return getProperty(name, def);
         }
 
         @Override
         public InventoryContents setProperty(String name, Object value) {
-            properties.put(name, value);
+            return putProperty(name, value);
+        }
+
+        @Override
+        public <T> T property(PropertyKey<T> key) {
+            return getProperty(key, null);
+        }
+
+        @Override
+        public <T> T property(PropertyKey<T> key, T def) {
+            return getProperty(key, def);
+        }
+
+        @Override
+        public <T> InventoryContents setProperty(PropertyKey<T> key, T value) {
+            return putProperty(key, value);
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T> T getProperty(Object key, T def) {
+            if(properties == null)
+                return def;
+
+            return (T) properties.getOrDefault(key, def);
+        }
+
+        private InventoryContents putProperty(Object key, Object value) {
+            if(properties == null)
+                properties = new SmallMap<>();
+
+            properties.put(key, value);
             return this;
         }
 
+        @Override
+        public InventoryContents bind(int row, int column, String key,
+                                      Function<Optional<String>, ClickableItem> renderer) {
+
+            if(bindings == null)
+                bindings = new SmallMap<>();
+
+            // Binding again the same slot, e.g. from update, replaces what it was bound to
+            unbind(row, column, key);
+
+            List<StateBinding> keyBindings = bindings.get(key);
+
+            if(keyBindings == null) {
+                keyBindings = new ArrayList<>(1);
+                bindings.put(key, keyBindings);
+
+                if(!detached)
+                    inv.getManager().bindState(key, this);
+            }
+
+            keyBindings.add(new StateBinding(row, column, renderer));
+            return set(row, column, renderer.apply(inv.getManager().getStateStore().get(key)));
+        }
+
+        @Override
+        public InventoryContents bind(SlotPos slotPos, String key,
+                                      Function<Optional<String>, ClickableItem> renderer) {
+
+            return bind(slotPos.getRow(), slotPos.getColumn(), key, renderer);
+        }
+
+        @Override
+        public InventoryContents refresh(String key) {
+            List<StateBinding> keyBindings = bindings != null ? bindings.get(key) : null;
+
+            if(keyBindings == null)
+                return this;
+
+            Optional<String> value = inv.getManager().getStateStore().get(key);
+
+            for(StateBinding binding : keyBindings)
+                set(binding.row, binding.column, binding.renderer.apply(value));
+
+            return this;
+        }
+
+        private void unbind(int row, int column, String newKey) {
+            for(int i = bindings.size() - 1; i >= 0; i--) {
+                String key = bindings.keyAt(i);
+                List<StateBinding> keyBindings = bindings.valueAt(i);
+
+                keyBindings.removeIf(binding -> binding.row == row && binding.column == column);
+
+                if(keyBindings.isEmpty() && !key.equals(newKey)) {
+                    bindings.remove(key);
+
+                    if(!detached)
+                        inv.getManager().unbindState(key, this);
+                }
+            }
+        }
+
+        PageCache pageCache() {
+            // Contents prepared off the main thread don't use the cache
+            if(inv.getPageCacheSize() <= 0 || !Bukkit.isPrimaryThread())
+                return null;
+
+            return inv.getManager().getSession(player)
+                    .filter(session -> session.getContents() == this)
+                    .map(session -> session.getPageCache(inv))
+                    .orElse(null);
+        }
+
         private void update(int row, int column, ItemStack item) {
-            Player currentPlayer = Bukkit.getPlayer(player);
-            if(!inv.getManager().getOpenedPlayers(inv).contains(currentPlayer))
+            // Not displayed yet, the opener sends the whole contents
+            if(detached)
+                return;
+
+            if(inv.isShared()) {
+                inv.getManager().renderShared(this, inv.getColumns() * row + column, item);
                 return;
+            }
+
+            InventorySession session = inv.getManager().getSession(player).orElse(null);
+            int slot = inv.getColumns() * row + column;
+
+            // Only write through when these contents are the ones displayed to the player
+            if(session == null || session.getContents() != this || session.getInventory() != inv
+                    || session.getOverride(slot) != null)
+                return;
+
+            inv.getManager().getRenderer().render(session, slot, item);
+        }
+
+        private static final class StateBinding {
+
+            private final int row, column;
+            private final Function<Optional<String>, ClickableItem> renderer;
+
+            private StateBinding(int row, int column, Function<Optional<String>, ClickableItem> renderer) {
+                this.row = row;
+                this.column = column;
+                this.renderer = renderer;
+            }
 
-            Inventory topInventory = currentPlayer.getOpenInventory().getTopInventory();
-            topInventory.setItem(inv.getColumns() * row + column, item);
         }
 
     }
@@ -1,5 +1,6 @@
 package fr.minuskube.inv.content;
 
+import fr.minuskube.inv.SmartInventory;
 import org.bukkit.entity.Player;
 
 public interface InventoryProvider {
@@ -7,4 +8,8 @@ public interface InventoryProvider {
     void init(Player player, InventoryContents contents);
     default void update(Player player, InventoryContents contents) {}
 
+    // Called when the inventory gets its first viewer, and once it has had none for its idle timeout
+    default void firstOpened(SmartInventory inventory) {}
+    default void lastClosed(SmartInventory inventory) {}
+
 }
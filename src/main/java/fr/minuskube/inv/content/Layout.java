@@ -0,0 +1,106 @@
+package fr.minuskube.inv.content;
+
+import fr.minuskube.inv.ClickableItem;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// A mask of one string per row, each character standing for a group of slots
+public final class Layout {
+
+    private static final int[] NO_SLOTS = new int[0];
+
+    private final int rows, columns;
+    private final char[] mask;
+
+    // Slots of each character in reading order, computed once
+    private final Map<Character, int[]> groups = new HashMap<>();
+
+    private final Map<Character, ClickableItem> items = new HashMap<>();
+    private ClickableItem[] compiled;
+
+    private Layout(String[] lines) {
+        this.rows = lines.length;
+        this.columns = lines[0].length();
+        this.mask = new char[rows * columns];
+
+        Map<Character, Integer> counts = new HashMap<>();
+
+        for(int row = 0; row < rows; row++) {
+            if(lines[row].length() != columns)
+                throw new IllegalArgumentException("All the rows of a layout must have the same length.");
+
+            for(int column = 0; column < columns; column++) {
+                char symbol = lines[row].charAt(column);
+
+                mask[row * columns + column] = symbol;
+                counts.merge(symbol, 1, Integer::sum);
+            }
+        }
+
+        counts.forEach((symbol, count) -> groups.put(symbol, new int[count]));
+        counts.replaceAll((symbol, count) -> 0);
+
+        for(int slot = 0; slot < mask.length; slot++) {
+            char symbol = mask[slot];
+            groups.get(symbol)[counts.merge(symbol, 1, Integer::sum) - 1] = slot;
+        }
+    }
+
+    public static Layout of(String... rows) {
+        if(rows.length == 0 || rows[0].isEmpty())
+            throw new IllegalArgumentException("A layout must have at least one row and one column.");
+
+        return new Layout(rows);
+    }
+
+    public int getRows() { return rows; }
+    public int getColumns() { return columns; }
+
+    public char at(int row, int column) { return mask[row * columns + column]; }
+
+    public Layout item(char symbol, ClickableItem item) {
+        items.put(symbol, item);
+        compiled = null;
+
+        return this;
+    }
+
+    public int[] slots(char symbol) {
+        return group(symbol).clone();
+    }
+
+    int[] group(char symbol) {
+        return groups.getOrDefault(symbol, NO_SLOTS);
+    }
+
+    // The slots of a group for an inventory of the given width, shared when it matches the layout's
+    int[] group(char symbol, int inventoryColumns) {
+        int[] slots = group(symbol);
+
+        if(inventoryColumns == columns)
+            return slots;
+
+        int[] converted = new int[slots.length];
+
+        for(int i = 0; i < slots.length; i++)
+            converted[i] = slots[i] / columns * inventoryColumns + slots[i] % columns;
+
+        return converted;
+    }
+
+    // Indexed by slot of the layout, null where no item is mapped
+    ClickableItem[] compiled() {
+        if(compiled == null) {
+            ClickableItem[] result = new ClickableItem[mask.length];
+
+            for(int slot = 0; slot < mask.length; slot++)
+                result[slot] = items.get(mask[slot]);
+
+            compiled = result;
+        }
+
+        return compiled;
+    }
+
+}
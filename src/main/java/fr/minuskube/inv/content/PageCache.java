@@ -0,0 +1,99 @@
+package fr.minuskube.inv.content;
+
+import fr.minuskube.inv.ClickableItem;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Pages already rendered for a player, kept while they stay in the same inventory
+public final class PageCache {
+
+    private final Map<Long, Page> pages;
+
+    public PageCache(int capacity) {
+        this.pages = new LinkedHashMap<Long, Page>(capacity + 1, 1, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Page> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public void clear() { pages.clear(); }
+    public int size() { return pages.size(); }
+
+    // A started iterator moves before placing the first item, a fresh one does not
+    static long key(int page, int row, int column, boolean started) {
+        return ((long) page << 32) | (started ? 1L << 31 : 0) | (row << 16) | column;
+    }
+
+    // Only valid while the source is the same and has not been modified since the page was rendered
+    Page get(long key, PaginationSource source, int itemsPerPage) {
+        Page page = pages.get(key);
+
+        if(page == null)
+            return null;
+
+        if(!page.source.equals(source) || page.version != source.version() || page.itemsPerPage != itemsPerPage) {
+            pages.remove(key);
+            return null;
+        }
+
+        return page;
+    }
+
+    void put(long key, Page page) {
+        pages.put(key, page);
+    }
+
+    static final class Page {
+
+        private final PaginationSource source;
+        private final long version;
+        private final int itemsPerPage;
+
+        private final int[] rows, columns;
+        private final ClickableItem[] items;
+        private int size;
+        private int endRow, endColumn;
+        private boolean endStarted;
+
+        Page(PaginationSource source, int itemsPerPage) {
+            this.source = source;
+            this.version = source.version();
+            this.itemsPerPage = itemsPerPage;
+
+            this.rows = new int[itemsPerPage];
+            this.columns = new int[itemsPerPage];
+            this.items = new ClickableItem[itemsPerPage];
+        }
+
+        void add(int row, int column, ClickableItem item) {
+            if(size == items.length)
+                return;
+
+            rows[size] = row;
+            columns[size] = column;
+            items[size++] = item;
+        }
+
+        void end(SlotIterator iterator) {
+            this.endRow = iterator.row();
+            this.endColumn = iterator.column();
+            this.endStarted = iterator.started();
+        }
+
+        // Leaves the iterator where the original render left it, started as its next() calls left it
+        void writeTo(InventoryContents contents, SlotIterator.Impl iterator) {
+            for(int i = 0; i < size; i++)
+                contents.set(rows[i], columns[i], items[i]);
+
+            iterator.row(endRow).column(endColumn);
+
+            if(endStarted)
+                iterator.start();
+        }
+
+    }
+
+}
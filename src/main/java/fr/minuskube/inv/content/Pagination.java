@@ -2,7 +2,7 @@ package fr.minuskube.inv.content;
 
 import fr.minuskube.inv.ClickableItem;
 
-import java.util.Arrays;
+import java.util.function.Function;
 
 public interface Pagination {
 
@@ -22,21 +22,36 @@ public interface Pagination {
     Pagination addToIterator(SlotIterator iterator);
 
     Pagination setItems(ClickableItem... items);
+    Pagination setSource(PaginationSource source);
+    <T> PaginationIndex<T> newIndex(Function<? super T, ClickableItem> renderer);
     Pagination setItemsPerPage(int itemsPerPage);
 
 
     class Impl implements Pagination {
 
+        private InventoryContents.Impl contents;
         private int currentPage;
 
-        private ClickableItem[] items = new ClickableItem[0];
+        private PaginationSource source = PaginationSource.EMPTY;
         private int itemsPerPage = 5;
 
+        public Impl() {}
+
+        Impl(InventoryContents.Impl contents) {
+            this.contents = contents;
+        }
+
         @Override
         public ClickableItem[] getPageItems() {
-            return Arrays.copyOfRange(items,
-                    currentPage * itemsPerPage,
-                    (currentPage + 1) * itemsPerPage);
+            ClickableItem[] pageItems = new ClickableItem[itemsPerPage];
+
+            int from = currentPage * itemsPerPage;
+            int to = Math.min(from + itemsPerPage, source.size());
+
+            for(int i = from; i < to; i++)
+                pageItems[i - from] = source.get(i);
+
+            return pageItems;
         }
 
         @Override
@@ -57,8 +72,7 @@ public interface Pagination {
 
         @Override
         public boolean isLast() {
-            int pageCount = (int) Math.ceil((double) this.items.length / this.itemsPerPage);
-            return this.currentPage >= pageCount - 1;
+            return this.currentPage >= pageCount() - 1;
         }
 
         @Override
@@ -85,34 +99,83 @@ public interface Pagination {
 
         @Override
         public Pagination last() {
-            this.currentPage = this.items.length / this.itemsPerPage;
+            this.currentPage = Math.max(pageCount() - 1, 0);
             return this;
         }
 
         @Override
         public Pagination addToIterator(SlotIterator iterator) {
-            for(ClickableItem item : getPageItems()) {
+            // A hit has to restore the iterator state, which only the default iterator exposes
+            PageCache cache = contents != null && iterator instanceof SlotIterator.Impl ? contents.pageCache() : null;
+            long key = PageCache.key(currentPage, iterator.row(), iterator.column(), iterator.started());
+
+            PageCache.Page page = cache != null ? cache.get(key, source, itemsPerPage) : null;
+
+            if(page != null) {
+                page.writeTo(contents, (SlotIterator.Impl) iterator);
+                return this;
+            }
+
+            if(cache != null)
+                page = new PageCache.Page(source, itemsPerPage);
+
+            int from = currentPage * itemsPerPage;
+            int size = source.size();
+
+            // Only the items of the current page are fetched from the source
+            for(int i = from; i < from + itemsPerPage; i++) {
+                ClickableItem item = i < size ? source.get(i) : null;
                 iterator.next().set(item);
 
+                if(page != null && contents.get(iterator.row(), iterator.column()).orElse(null) == item)
+                    page.add(iterator.row(), iterator.column(), item);
+
                 if(iterator.ended())
                     break;
             }
 
+            if(page != null) {
+                page.end(iterator);
+                cache.put(key, page);
+            }
+
             return this;
         }
 
         @Override
         public Pagination setItems(ClickableItem... items) {
-            this.items = items;
+            this.source = PaginationSource.of(items);
+            return this;
+        }
+
+        @Override
+        public Pagination setSource(PaginationSource source) {
+            this.source = source;
             return this;
         }
 
+        // Sized from the inventory's expected items, and used as the source of this pagination
+        @Override
+        public <T> PaginationIndex<T> newIndex(Function<? super T, ClickableItem> renderer) {
+            int expectedItems = contents != null ? contents.inventory().getExpectedItems() : 0;
+            PaginationIndex<T> index = expectedItems > 0
+                    ? new PaginationIndex<>(renderer, expectedItems)
+                    : new PaginationIndex<>(renderer);
+
+            this.source = index;
+            return index;
+        }
+
         @Override
         public Pagination setItemsPerPage(int itemsPerPage) {
             this.itemsPerPage = itemsPerPage;
             return this;
         }
 
+        private int pageCount() {
+            return (source.size() + itemsPerPage - 1) / itemsPerPage;
+        }
+
     }
 
 }
@@ -0,0 +1,214 @@
+package fr.minuskube.inv.content;
+
+import fr.minuskube.inv.ClickableItem;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+// Keeps a filtered and sorted view of its entries up to date incrementally.
+// Entries are tracked by identity, and items are only rendered when their page is displayed.
+public class PaginationIndex<T> implements PaginationSource {
+
+    private final Function<? super T, ClickableItem> renderer;
+
+    private final Map<T, Entry<T>> entries;
+    private final List<Entry<T>> visible;
+    private long nextSequence;
+    private long version;
+
+    private Comparator<? super T> comparator;
+    private Predicate<? super T> filter;
+
+    private final Comparator<Entry<T>> order = (a, b) -> {
+        int result = comparator != null ? comparator.compare(a.value, b.value) : 0;
+        return result != 0 ? result : Long.compare(a.sequence, b.sequence);
+    };
+
+    public PaginationIndex(Function<? super T, ClickableItem> renderer) {
+        this(renderer, 16);
+    }
+
+    public PaginationIndex(Function<? super T, ClickableItem> renderer, int expectedSize) {
+        this.renderer = renderer;
+        this.entries = new IdentityHashMap<>(expectedSize);
+        this.visible = new ArrayList<>(expectedSize);
+    }
+
+    public PaginationIndex(Function<? super T, ClickableItem> renderer, Collection<? extends T> entries) {
+        this(renderer, entries.size());
+        addAll(entries);
+    }
+
+    @Override
+    public int size() { return visible.size(); }
+
+    @Override
+    public ClickableItem get(int index) {
+        return renderer.apply(visible.get(index).value);
+    }
+
+    @Override
+    public long version() { return version; }
+
+    public T getEntry(int index) { return visible.get(index).value; }
+
+    public int totalSize() { return entries.size(); }
+    public boolean contains(T value) { return entries.containsKey(value); }
+
+    public boolean add(T value) {
+        if(entries.containsKey(value))
+            return false;
+
+        Entry<T> entry = new Entry<>(value, nextSequence++);
+        entries.put(value, entry);
+
+        if(accepts(value))
+            insert(entry);
+
+        return true;
+    }
+
+    public PaginationIndex<T> addAll(Collection<? extends T> values) {
+        for(T value : values) {
+            if(entries.containsKey(value))
+                continue;
+
+            Entry<T> entry = new Entry<>(value, nextSequence++);
+            entries.put(value, entry);
+        }
+
+        rebuild();
+        return this;
+    }
+
+    public boolean remove(T value) {
+        Entry<T> entry = entries.remove(value);
+        if(entry == null)
+            return false;
+
+        if(entry.visible)
+            detach(entry);
+
+        return true;
+    }
+
+    // Re-evaluates the filter and the position of an entry whose state has changed
+    public boolean update(T value) {
+        Entry<T> entry = entries.get(value);
+        if(entry == null)
+            return false;
+
+        if(entry.visible)
+            detach(entry);
+
+        if(accepts(value))
+            insert(entry);
+
+        return true;
+    }
+
+    public PaginationIndex<T> clear() {
+        entries.clear();
+        visible.clear();
+        version++;
+        return this;
+    }
+
+    public PaginationIndex<T> setFilter(Predicate<? super T> filter) {
+        this.filter = filter;
+        rebuild();
+        return this;
+    }
+
+    public PaginationIndex<T> setComparator(Comparator<? super T> comparator) {
+        this.comparator = comparator;
+        rebuild();
+        return this;
+    }
+
+    private boolean accepts(T value) {
+        return filter == null || filter.test(value);
+    }
+
+    private void insert(Entry<T> entry) {
+        int index = -(binarySearch(entry) + 1);
+
+        visible.add(index, entry);
+        entry.visible = true;
+        version++;
+    }
+
+    private void detach(Entry<T> entry) {
+        int index = binarySearch(entry);
+
+        // The entry may have changed since it was inserted, which breaks the ordering around it
+        if(index < 0 || visible.get(index) != entry)
+            index = indexOf(entry);
+
+        visible.remove(index);
+        entry.visible = false;
+        version++;
+    }
+
+    private int binarySearch(Entry<T> entry) {
+        int low = 0;
+        int high = visible.size() - 1;
+
+        while(low <= high) {
+            int middle = (low + high) >>> 1;
+            int result = order.compare(visible.get(middle), entry);
+
+            if(result < 0)
+                low = middle + 1;
+            else if(result > 0)
+                high = middle - 1;
+            else
+                return middle;
+        }
+
+        return -(low + 1);
+    }
+
+    private int indexOf(Entry<T> entry) {
+        for(int i = 0; i < visible.size(); i++) {
+            if(visible.get(i) == entry)
+                return i;
+        }
+
+        return -1;
+    }
+
+    private void rebuild() {
+        visible.clear();
+
+        for(Entry<T> entry : entries.values()) {
+            entry.visible = accepts(entry.value);
+
+            if(entry.visible)
+                visible.add(entry);
+        }
+
+        visible.sort(order);
+        version++;
+    }
+
+    private static final class Entry<T> {
+
+        private final T value;
+        private final long sequence;
+        private boolean visible;
+
+        private Entry(T value, long sequence) {
+            this.value = value;
+            this.sequence = sequence;
+        }
+
+    }
+
+}
@@ -0,0 +1,19 @@
+package fr.minuskube.inv.content;
+
+import fr.minuskube.inv.ClickableItem;
+
+public interface PaginationSource {
+
+    PaginationSource EMPTY = of();
+
+    int size();
+    ClickableItem get(int index);
+
+    // Changes whenever the items of the source change, sources which never change can keep 0
+    default long version() { return 0; }
+
+    static PaginationSource of(ClickableItem... items) {
+        return new ArrayPaginationSource(items);
+    }
+
+}
@@ -0,0 +1,17 @@
+package fr.minuskube.inv.content;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.InventoryClickEvent;
+
+public interface Pane {
+
+    void render(Player player, InventoryContents contents, Panes.Region region);
+
+    // Ticks between automatic re-renders, 0 to only render when invalidated
+    default int getUpdateRate() { return 0; }
+
+    default void click(InventoryClickEvent e, InventoryContents contents, Panes.Region region, int row, int column) {
+        contents.get(row, column).ifPresent(item -> item.run(e));
+    }
+
+}
@@ -0,0 +1,151 @@
+package fr.minuskube.inv.content;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.InventoryClickEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public class Panes {
+
+    private final InventoryContents contents;
+    private final UUID player;
+    private final int rows, columns;
+
+    private List<Region> regions;
+
+    // Owning region of each slot, the last added region wins where they overlap
+    private Region[] owners;
+
+    public Panes(InventoryContents contents, UUID player) {
+        this.contents = contents;
+        this.player = player;
+        this.rows = contents.inventory().getRows();
+        this.columns = contents.inventory().getColumns();
+    }
+
+    public Region add(int fromRow, int fromColumn, int toRow, int toColumn, Pane pane) {
+        Region region = new Region(fromRow, fromColumn, toRow, toColumn, pane);
+
+        if(regions == null)
+            regions = new ArrayList<>(4);
+
+        regions.add(region);
+        claim(region);
+
+        // Rendered once attached when added while the contents are prepared off the main thread
+        if(Bukkit.isPrimaryThread())
+            region.render(Bukkit.getPlayer(player));
+        else
+            region.invalidate();
+
+        return region;
+    }
+
+    public Region add(SlotPos fromPos, SlotPos toPos, Pane pane) {
+        return add(fromPos.getRow(), fromPos.getColumn(), toPos.getRow(), toPos.getColumn(), pane);
+    }
+
+    public Optional<Region> at(int row, int column) {
+        if(owners == null || row < 0 || column < 0 || row >= rows || column >= columns)
+            return Optional.empty();
+
+        return Optional.ofNullable(owners[row * columns + column]);
+    }
+
+    public void invalidateAll() {
+        if(regions != null)
+            regions.forEach(Region::invalidate);
+    }
+
+    public boolean isEmpty() { return regions == null || regions.isEmpty(); }
+
+    public void update(Player player) { update(player, true); }
+
+    // Without animations, only the invalidated regions are rendered, not those due to their update rate
+    public void update(Player player, boolean animations) {
+        if(isEmpty())
+            return;
+
+        // Rates are counted in server ticks, however often these contents are updated
+        long tick = contents.inventory().getManager().getTickCount();
+
+        for(Region region : regions) {
+            int rate = region.pane.getUpdateRate();
+
+            if(region.dirty || (animations && rate > 0 && tick - region.renderedAt >= rate))
+                region.render(player);
+        }
+    }
+
+    // Returns false when no region owns the slot
+    public boolean click(InventoryClickEvent e, int row, int column) {
+        Optional<Region> region = at(row, column);
+
+        if(!region.isPresent())
+            return false;
+
+        region.get().pane.click(e, contents, region.get(), row, column);
+        return true;
+    }
+
+    private void claim(Region region) {
+        if(owners == null)
+            owners = new Region[rows * columns];
+
+        for(int row = Math.max(region.fromRow, 0); row <= Math.min(region.toRow, rows - 1); row++)
+            for(int column = Math.max(region.fromColumn, 0); column <= Math.min(region.toColumn, columns - 1); column++)
+                owners[row * columns + column] = region;
+    }
+
+    public class Region {
+
+        private final int fromRow, fromColumn;
+        private final int toRow, toColumn;
+        private final Pane pane;
+
+        private boolean dirty;
+        private long renderedAt;
+
+        private Region(int fromRow, int fromColumn, int toRow, int toColumn, Pane pane) {
+            this.fromRow = fromRow;
+            this.fromColumn = fromColumn;
+            this.toRow = toRow;
+            this.toColumn = toColumn;
+            this.pane = pane;
+        }
+
+        public int getFromRow() { return fromRow; }
+        public int getFromColumn() { return fromColumn; }
+        public int getToRow() { return toRow; }
+        public int getToColumn() { return toColumn; }
+
+        public Pane getPane() { return pane; }
+
+        public boolean contains(int row, int column) {
+            return row >= fromRow && row <= toRow && column >= fromColumn && column <= toColumn;
+        }
+
+        public void invalidate() { this.dirty = true; }
+
+        public void remove() {
+            if(regions == null || !regions.remove(this))
+                return;
+
+            owners = null;
+            regions.forEach(Panes.this::claim);
+        }
+
+        private void render(Player player) {
+            this.dirty = false;
+            this.renderedAt = contents.inventory().getManager().getTickCount();
+
+            pane.render(player, contents, this);
+        }
+
+    }
+
+}
@@ -0,0 +1,22 @@
+package fr.minuskube.inv.content;
+
+public final class PropertyKey<T> {
+
+    private final String name;
+
+    private PropertyKey(String name) {
+        this.name = name;
+    }
+
+    public String getName() { return name; }
+
+    @Override
+    public String toString() {
+        return "PropertyKey{" + name + "}";
+    }
+
+    public static <T> PropertyKey<T> of(String name) {
+        return new PropertyKey<>(name);
+    }
+
+}
@@ -0,0 +1,177 @@
+package fr.minuskube.inv.content;
+
+import fr.minuskube.inv.ClickableItem;
+
+public interface ScrollView {
+
+    @FunctionalInterface
+    interface Renderer {
+        ClickableItem render(int row, int column);
+    }
+
+    ScrollView setGrid(int rows, int columns, Renderer renderer);
+
+    int getRows();
+    int getColumns();
+
+    int getRowOffset();
+    int getColumnOffset();
+
+    ScrollView scrollTo(int rowOffset, int columnOffset);
+    ScrollView scrollRows(int amount);
+    ScrollView scrollColumns(int amount);
+
+    boolean isTop();
+    boolean isBottom();
+    boolean isLeft();
+    boolean isRight();
+
+    ScrollView invalidate();
+    ScrollView invalidate(int row, int column);
+
+
+    class Impl implements ScrollView {
+
+        private InventoryContents contents;
+
+        private int fromRow, fromColumn;
+        private int viewRows, viewColumns;
+
+        private int rows, columns;
+        private int rowOffset, columnOffset;
+        private Renderer renderer = (row, column) -> null;
+
+        // Materialized cells of the visible window, indexed by logical position modulo the view size
+        private ClickableItem[] cells;
+
+        public Impl(InventoryContents contents, int fromRow, int fromColumn, int toRow, int toColumn) {
+            this.contents = contents;
+
+            this.fromRow = fromRow;
+            this.fromColumn = fromColumn;
+            this.viewRows = toRow - fromRow + 1;
+            this.viewColumns = toColumn - fromColumn + 1;
+
+            this.cells = new ClickableItem[viewRows * viewColumns];
+        }
+
+        @Override
+        public ScrollView setGrid(int rows, int columns, Renderer renderer) {
+            this.rows = rows;
+            this.columns = columns;
+            this.renderer = renderer;
+
+            this.rowOffset = 0;
+            this.columnOffset = 0;
+
+            return invalidate();
+        }
+
+        @Override
+        public int getRows() { return rows; }
+
+        @Override
+        public int getColumns() { return columns; }
+
+        @Override
+        public int getRowOffset() { return rowOffset; }
+
+        @Override
+        public int getColumnOffset() { return columnOffset; }
+
+        @Override
+        public ScrollView scrollTo(int rowOffset, int columnOffset) {
+            rowOffset = Math.max(0, Math.min(rowOffset, rows - viewRows));
+            columnOffset = Math.max(0, Math.min(columnOffset, columns - viewColumns));
+
+            if(rowOffset == this.rowOffset && columnOffset == this.columnOffset)
+                return this;
+
+            int oldRowOffset = this.rowOffset;
+            int oldColumnOffset = this.columnOffset;
+
+            this.rowOffset = rowOffset;
+            this.columnOffset = columnOffset;
+
+            // Only the cells which were outside of the previous window need to be materialized
+            for(int row = rowOffset; row < rowOffset + viewRows; row++) {
+                boolean rowWasVisible = row >= oldRowOffset && row < oldRowOffset + viewRows;
+
+                for(int column = columnOffset; column < columnOffset + viewColumns; column++) {
+                    if(rowWasVisible && column >= oldColumnOffset && column < oldColumnOffset + viewColumns)
+                        continue;
+
+                    materialize(row, column);
+                }
+            }
+
+            write();
+            return this;
+        }
+
+        @Override
+        public ScrollView scrollRows(int amount) {
+            return scrollTo(rowOffset + amount, columnOffset);
+        }
+
+        @Override
+        public ScrollView scrollColumns(int amount) {
+            return scrollTo(rowOffset, columnOffset + amount);
+        }
+
+        @Override
+        public boolean isTop() { return rowOffset == 0; }
+
+        @Override
+        public boolean isBottom() { return rowOffset >= rows - viewRows; }
+
+        @Override
+        public boolean isLeft() { return columnOffset == 0; }
+
+        @Override
+        public boolean isRight() { return columnOffset >= columns - viewColumns; }
+
+        @Override
+        public ScrollView invalidate() {
+            for(int row = rowOffset; row < rowOffset + viewRows; row++)
+                for(int column = columnOffset; column < columnOffset + viewColumns; column++)
+                    materialize(row, column);
+
+            write();
+            return this;
+        }
+
+        @Override
+        public ScrollView invalidate(int row, int column) {
+            if(row < rowOffset || row >= rowOffset + viewRows)
+                return this;
+            if(column < columnOffset || column >= columnOffset + viewColumns)
+                return this;
+
+            materialize(row, column);
+            contents.set(fromRow + row - rowOffset, fromColumn + column - columnOffset, cells[cell(row, column)]);
+            return this;
+        }
+
+        private void materialize(int row, int column) {
+            cells[cell(row, column)] = row < rows && column < columns
+                    ? renderer.render(row, column)
+                    : null;
+        }
+
+        private void write() {
+            for(int row = 0; row < viewRows; row++) {
+                for(int column = 0; column < viewColumns; column++) {
+                    ClickableItem item = cells[cell(rowOffset + row, columnOffset + column)];
+                    contents.set(fromRow + row, fromColumn + column, item);
+                }
+            }
+        }
+
+        private int cell(int row, int column) {
+            return (row % viewRows) * viewColumns + column % viewColumns;
+        }
+
+    }
+
+}
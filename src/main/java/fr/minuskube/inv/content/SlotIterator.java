@@ -3,15 +3,16 @@ package fr.minuskube.inv.content;
 import fr.minuskube.inv.ClickableItem;
 import fr.minuskube.inv.SmartInventory;
 
-import java.util.HashSet;
 import java.util.Optional;
-import java.util.Set;
 
 public interface SlotIterator {
 
     enum Type {
         HORIZONTAL,
-        VERTICAL
+        VERTICAL,
+        SNAKE,
+        SPIRAL,
+        DIAGONAL
     }
 
     Optional<ClickableItem> get();
@@ -35,29 +36,30 @@ public interface SlotIterator {
     boolean doesAllowOverride();
     SlotIterator allowOverride(boolean override);
 
-
     class Impl implements SlotIterator {
 
         private InventoryContents contents;
         private SmartInventory inv;
 
-        private Type type;
         private boolean started = false;
         private boolean allowOverride = true;
         private int row, column;
 
-        private Set<SlotPos> blacklisted = new HashSet<>();
+        // Indexed by slot, allocated by the first blacklisted slot
+        private boolean[] blacklisted;
+
+        // Shared by all the iterators of the same traversal, must never be modified
+        private int[] order;
+        private int index;
 
         public Impl(InventoryContents contents, SmartInventory inv,
                     Type type, int startRow, int startColumn) {
 
-            this.contents = contents;
-            this.inv = inv;
-
-            this.type = type;
+            this(contents, inv, SlotOrders.order(type, inv.getRows(), inv.getColumns()));
 
             this.row = startRow;
             this.column = startColumn;
+            this.index = Math.max(indexOf(startRow, startColumn), 0);
         }
 
         public Impl(InventoryContents contents, SmartInventory inv,
@@ -66,6 +68,18 @@ public interface SlotIterator {
             this(contents, inv, type, 0, 0);
         }
 
+        public Impl(InventoryContents contents, SmartInventory inv, int[] order) {
+            this.contents = contents;
+            this.inv = inv;
+
+            this.order = order;
+
+            if(order.length > 0) {
+                this.row = order[0] / inv.getColumns();
+                this.column = order[0] % inv.getColumns();
+            }
+        }
+
         @Override
         public Optional<ClickableItem> get() {
             return contents.get(row, column);
@@ -81,77 +95,23 @@ public interface SlotIterator {
 
         @Override
         public SlotIterator previous() {
-            if(row == 0 && column == 0) {
-                this.started = true;
-                return this;
-            }
-
-            do {
-                if(!this.started) {
-                    this.started = true;
-                }
-                else {
-                    switch(type) {
-                        case HORIZONTAL:
-                            column--;
-
-                            if(column == 0) {
-                                column = inv.getColumns() - 1;
-                                row--;
-                            }
-                            break;
-                        case VERTICAL:
-                            row--;
-
-                            if(row == 0) {
-                                row = inv.getRows() - 1;
-                                column--;
-                            }
-                            break;
-                    }
-                }
-            }
-            while(!canPlace() && (row != 0 || column != 0));
-
-            return this;
+            return step(-1);
         }
 
         @Override
         public SlotIterator next() {
-            if(ended()) {
-                this.started = true;
-                return this;
-            }
-
-            do {
-                if(!this.started) {
-                    this.started = true;
-                }
-                else {
-                    switch(type) {
-                        case HORIZONTAL:
-                            column = ++column % inv.getColumns();
-
-                            if(column == 0)
-                                row++;
-                            break;
-                        case VERTICAL:
-                            row = ++row % inv.getRows();
-
-                            if(row == 0)
-                                column++;
-                            break;
-                    }
-                }
-            }
-            while(!canPlace() && !ended());
-
-            return this;
+            return step(1);
         }
 
         @Override
         public SlotIterator blacklist(int row, int column) {
-            this.blacklisted.add(SlotPos.of(row, column));
+            if(row < 0 || row >= inv.getRows() || column < 0 || column >= inv.getColumns())
+                return this;
+
+            if(this.blacklisted == null)
+                this.blacklisted = new boolean[inv.getRows() * inv.getColumns()];
+
+            this.blacklisted[row * inv.getColumns() + column] = true;
             return this;
         }
 
@@ -166,6 +126,7 @@ public interface SlotIterator {
         @Override
         public SlotIterator row(int row) {
             this.row = row;
+            moveTo(row, column);
             return this;
         }
 
@@ -175,6 +136,7 @@ public interface SlotIterator {
         @Override
         public SlotIterator column(int column) {
             this.column = column;
+            moveTo(row, column);
             return this;
         }
 
@@ -183,10 +145,13 @@ public interface SlotIterator {
             return this.started;
         }
 
+        void start() {
+            this.started = true;
+        }
+
         @Override
         public boolean ended() {
-            return row == inv.getRows() - 1
-                    && column == inv.getColumns() - 1;
+            return index >= order.length - 1;
         }
 
         @Override
@@ -198,10 +163,55 @@ public interface SlotIterator {
             return this;
         }
 
+        // The first call only starts the iterator on its current slot, the next ones move it
+        private SlotIterator step(int direction) {
+            if(order.length == 0) {
+                this.started = true;
+                return this;
+            }
+
+            do {
+                if(!this.started)
+                    this.started = true;
+                else if(index + direction >= 0 && index + direction < order.length)
+                    index += direction;
+                else
+                    break;
+
+                this.row = order[index] / inv.getColumns();
+                this.column = order[index] % inv.getColumns();
+            }
+            while(!canPlace() && (direction > 0 ? index < order.length - 1 : index > 0));
+
+            return this;
+        }
+
+        private void moveTo(int row, int column) {
+            int found = indexOf(row, column);
+
+            if(found >= 0)
+                this.index = found;
+        }
+
+        private int indexOf(int row, int column) {
+            int slot = row * inv.getColumns() + column;
+
+            for(int i = 0; i < order.length; i++) {
+                if(order[i] == slot)
+                    return i;
+            }
+
+            return -1;
+        }
+
         private boolean canPlace() {
-            return !blacklisted.contains(SlotPos.of(row, column)) && (allowOverride || !this.get().isPresent());
+            if(order.length == 0 || row < 0 || row >= inv.getRows() || column < 0 || column >= inv.getColumns())
+                return false;
+
+            return (blacklisted == null || !blacklisted[row * inv.getColumns() + column])
+                    && (allowOverride || !this.get().isPresent());
         }
 
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,133 @@
+package fr.minuskube.inv.content;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Traversal orders of the slots of an inventory shape, computed once and shared by every iterator
+public final class SlotOrders {
+
+    // Bounds of the shapes, so that a region fits in the cache key with 8 bits per coordinate
+    private static final int MAX_SIZE = 255;
+
+    private static final Map<Long, int[]> CACHE = new ConcurrentHashMap<>();
+
+    private SlotOrders() {}
+
+    public static int[] of(SlotIterator.Type type, int rows, int columns) {
+        return order(type, rows, columns).clone();
+    }
+
+    public static int[] region(SlotIterator.Type type, int rows, int columns,
+                               int fromRow, int fromColumn, int toRow, int toColumn) {
+
+        return regionOrder(type, rows, columns, fromRow, fromColumn, toRow, toColumn).clone();
+    }
+
+    public static int[] custom(int rows, int columns, SlotPos... slots) {
+        checkSize(rows, columns);
+
+        int[] order = new int[slots.length];
+
+        for(int i = 0; i < slots.length; i++) {
+            int row = slots[i].getRow();
+            int column = slots[i].getColumn();
+
+            if(row < 0 || row >= rows || column < 0 || column >= columns)
+                throw new IllegalArgumentException("The slot " + row + ", " + column
+                        + " is outside of an inventory of " + rows + "x" + columns + ".");
+
+            order[i] = row * columns + column;
+        }
+
+        return order;
+    }
+
+    static int[] order(SlotIterator.Type type, int rows, int columns) {
+        return regionOrder(type, rows, columns, 0, 0, rows - 1, columns - 1);
+    }
+
+    static int[] regionOrder(SlotIterator.Type type, int rows, int columns,
+                             int fromRow, int fromColumn, int toRow, int toColumn) {
+
+        checkSize(rows, columns);
+
+        if(fromRow < 0 || fromRow > toRow || toRow >= rows
+                || fromColumn < 0 || fromColumn > toColumn || toColumn >= columns)
+            throw new IllegalArgumentException("The region " + fromRow + ", " + fromColumn + " to " + toRow + ", " + toColumn
+                    + " is not within an inventory of " + rows + "x" + columns + ".");
+
+        long key = ((long) type.ordinal() << 40) | ((long) columns << 32)
+                | ((long) fromRow << 24) | (fromColumn << 16) | (toRow << 8) | toColumn;
+
+        return CACHE.computeIfAbsent(key, k -> compute(type, columns, fromRow, fromColumn, toRow, toColumn));
+    }
+
+    private static int[] compute(SlotIterator.Type type, int columns,
+                                 int fromRow, int fromColumn, int toRow, int toColumn) {
+
+        int height = Math.max(toRow - fromRow + 1, 0);
+        int width = Math.max(toColumn - fromColumn + 1, 0);
+
+        int[] order = new int[height * width];
+        int i = 0;
+
+        switch(type) {
+            case HORIZONTAL:
+                for(int row = 0; row < height; row++)
+                    for(int column = 0; column < width; column++)
+                        order[i++] = slot(columns, fromRow + row, fromColumn + column);
+                break;
+            case VERTICAL:
+                for(int column = 0; column < width; column++)
+                    for(int row = 0; row < height; row++)
+                        order[i++] = slot(columns, fromRow + row, fromColumn + column);
+                break;
+            case SNAKE:
+                for(int row = 0; row < height; row++)
+                    for(int column = 0; column < width; column++)
+                        order[i++] = slot(columns, fromRow + row,
+                                fromColumn + (row % 2 == 0 ? column : width - 1 - column));
+                break;
+            case DIAGONAL:
+                for(int diagonal = 0; diagonal < height + width - 1; diagonal++)
+                    for(int row = Math.max(0, diagonal - width + 1); row <= Math.min(diagonal, height - 1); row++)
+                        order[i++] = slot(columns, fromRow + row, fromColumn + diagonal - row);
+                break;
+            case SPIRAL:
+                int top = 0, bottom = height - 1, left = 0, right = width - 1;
+
+                while(top <= bottom && left <= right) {
+                    for(int column = left; column <= right; column++)
+                        order[i++] = slot(columns, fromRow + top, fromColumn + column);
+                    for(int row = top + 1; row <= bottom; row++)
+                        order[i++] = slot(columns, fromRow + row, fromColumn + right);
+
+                    if(top < bottom)
+                        for(int column = right - 1; column >= left; column--)
+                            order[i++] = slot(columns, fromRow + bottom, fromColumn + column);
+                    if(left < right)
+                        for(int row = bottom - 1; row > top; row--)
+                            order[i++] = slot(columns, fromRow + row, fromColumn + left);
+
+                    top++;
+                    bottom--;
+                    left++;
+                    right--;
+                }
+                break;
+        }
+
+        return order;
+    }
+
+    private static void checkSize(int rows, int columns) {
+        if(rows < 1 || rows > MAX_SIZE || columns < 1 || columns > MAX_SIZE)
+            throw new IllegalArgumentException("The size of an inventory must be between 1x1 and "
+                    + MAX_SIZE + "x" + MAX_SIZE + ", found: " + rows + "x" + columns + ".");
+    }
+
+    private static int slot(int columns, int row, int column) {
+        return row * columns + column;
+    }
+
+}
@@ -0,0 +1,134 @@
+package fr.minuskube.inv.content;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+@SuppressWarnings("unchecked")
+final class SmallMap<K, V> {
+
+    private static final int DEFAULT_CAPACITY = 4;
+
+    // Above this size, lookups go through a hash index of the arrays instead of scanning them
+    private static final int HASH_THRESHOLD = 8;
+
+    private Object[] keys;
+    private Object[] values;
+    private int size;
+
+    private Map<Object, Integer> lookup;
+
+    SmallMap() { this(DEFAULT_CAPACITY); }
+    SmallMap(int capacity) {
+        this.keys = new Object[Math.max(capacity, 1)];
+        this.values = new Object[keys.length];
+    }
+
+    int size() { return size; }
+    boolean isEmpty() { return size == 0; }
+
+    boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    V get(Object key) {
+        return getOrDefault(key, null);
+    }
+
+    V getOrDefault(Object key, V def) {
+        int index = indexOf(key);
+        return index >= 0 ? (V) values[index] : def;
+    }
+
+    V put(K key, V value) {
+        int index = indexOf(key);
+
+        if(index >= 0) {
+            V old = (V) values[index];
+            values[index] = value;
+            return old;
+        }
+
+        if(size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+
+        keys[size] = key;
+        values[size] = value;
+
+        if(lookup != null)
+            lookup.put(key, size);
+
+        size++;
+
+        if(lookup == null && size > HASH_THRESHOLD)
+            buildLookup();
+
+        return null;
+    }
+
+    V remove(Object key) {
+        int index = indexOf(key);
+        if(index < 0)
+            return null;
+
+        V old = (V) values[index];
+        int moved = size - index - 1;
+
+        if(moved > 0) {
+            System.arraycopy(keys, index + 1, keys, index, moved);
+            System.arraycopy(values, index + 1, values, index, moved);
+        }
+
+        size--;
+        keys[size] = null;
+        values[size] = null;
+
+        // The entries after the removed one moved down by one
+        if(size <= HASH_THRESHOLD)
+            lookup = null;
+        else if(lookup != null) {
+            lookup.remove(key);
+
+            for(int i = index; i < size; i++)
+                lookup.put(keys[i], i);
+        }
+
+        return old;
+    }
+
+    K keyAt(int index) { return (K) keys[index]; }
+    V valueAt(int index) { return (V) values[index]; }
+
+    private void buildLookup() {
+        lookup = new HashMap<>(size * 2);
+
+        for(int i = 0; i < size; i++)
+            lookup.put(keys[i], i);
+    }
+
+    // Identity pass first: keys are usually constants or PropertyKeys, so this avoids equals() calls entirely
+    private int indexOf(Object key) {
+        if(lookup != null) {
+            Integer found = lookup.get(key);
+            return found != null ? found : -1;
+        }
+
+        for(int i = 0; i < size; i++) {
+            if(keys[i] == key)
+                return i;
+        }
+
+        if(key == null)
+            return -1;
+
+        for(int i = 0; i < size; i++) {
+            if(key.equals(keys[i]))
+                return i;
+        }
+
+        return -1;
+    }
+
+}
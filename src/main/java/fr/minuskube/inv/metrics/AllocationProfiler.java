@@ -0,0 +1,137 @@
+package fr.minuskube.inv.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+public class AllocationProfiler {
+
+    public enum Phase {
+        INIT,
+        UPDATE,
+        CLICK
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS = findThreadBean();
+
+    private final Map<String, Stats> stats = new HashMap<>();
+
+    public AllocationProfiler() {
+        if(THREADS != null && !THREADS.isThreadAllocatedMemoryEnabled())
+            THREADS.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    public static boolean isSupported() { return THREADS != null; }
+
+    // Bytes allocated so far by the current thread, or -1 when not supported
+    public long mark() {
+        return THREADS != null ? THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1;
+    }
+
+    public void record(String inventoryId, Phase phase, long mark) {
+        if(mark < 0)
+            return;
+
+        long allocated = mark() - mark;
+
+        synchronized(stats) {
+            stats.computeIfAbsent(inventoryId, id -> new Stats()).add(phase, allocated);
+        }
+    }
+
+    public Map<String, Stats> getStats() {
+        Map<String, Stats> copy = new HashMap<>();
+
+        synchronized(stats) {
+            stats.forEach((id, value) -> copy.put(id, value.copy()));
+        }
+
+        return Collections.unmodifiableMap(copy);
+    }
+
+    public void reset() {
+        synchronized(stats) {
+            stats.clear();
+        }
+    }
+
+    public List<String> summary() {
+        List<String> lines = new ArrayList<>();
+
+        getStats().entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue().getTotalBytes(), a.getValue().getTotalBytes()))
+                .forEach(entry -> {
+                    StringBuilder line = new StringBuilder(entry.getKey()).append(':');
+
+                    for(Phase phase : Phase.values()) {
+                        Stats value = entry.getValue();
+
+                        if(value.getCount(phase) == 0)
+                            continue;
+
+                        line.append(String.format(Locale.ROOT, " %s %d x %d B",
+                                phase.name().toLowerCase(Locale.ROOT), value.getCount(phase), value.getAverageBytes(phase)));
+                    }
+
+                    lines.add(line.toString());
+                });
+
+        return lines;
+    }
+
+    private static com.sun.management.ThreadMXBean findThreadBean() {
+        try {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+            if(bean instanceof com.sun.management.ThreadMXBean
+                    && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported())
+                return (com.sun.management.ThreadMXBean) bean;
+        } catch(LinkageError | UnsupportedOperationException e) {
+            // Not a HotSpot based JVM
+        }
+
+        return null;
+    }
+
+    public static final class Stats {
+
+        private final long[] counts = new long[Phase.values().length];
+        private final long[] bytes = new long[Phase.values().length];
+
+        private void add(Phase phase, long allocated) {
+            counts[phase.ordinal()]++;
+            bytes[phase.ordinal()] += allocated;
+        }
+
+        private Stats copy() {
+            Stats copy = new Stats();
+            System.arraycopy(counts, 0, copy.counts, 0, counts.length);
+            System.arraycopy(bytes, 0, copy.bytes, 0, bytes.length);
+            return copy;
+        }
+
+        public long getCount(Phase phase) { return counts[phase.ordinal()]; }
+        public long getBytes(Phase phase) { return bytes[phase.ordinal()]; }
+
+        public long getAverageBytes(Phase phase) {
+            long count = getCount(phase);
+            return count == 0 ? 0 : getBytes(phase) / count;
+        }
+
+        public long getTotalBytes() {
+            long total = 0;
+
+            for(long value : bytes)
+                total += value;
+
+            return total;
+        }
+
+    }
+
+}
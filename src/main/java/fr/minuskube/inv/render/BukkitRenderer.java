@@ -0,0 +1,83 @@
+package fr.minuskube.inv.render;
+
+import fr.minuskube.inv.InventorySession;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class BukkitRenderer implements InventoryRenderer {
+
+    private final Map<InventorySession, SentSlots> sent = new HashMap<>();
+    private long skippedWrites;
+
+    @Override
+    public void render(InventorySession session, int slot, ItemStack item) {
+        Inventory topInventory = session.getHandle() != null
+                ? session.getHandle()
+                : session.getPlayer().getOpenInventory().getTopInventory();
+
+        SentSlots slots = sent.get(session);
+
+        if(slots == null || slots.handle != topInventory) {
+            slots = new SentSlots(topInventory);
+            sent.put(session, slots);
+        }
+
+        if(slot < 0 || slot >= slots.items.length) {
+            topInventory.setItem(slot, item);
+            return;
+        }
+
+        int hash = item != null ? item.hashCode() : 0;
+
+        if(slots.isSent(slot, item, hash)) {
+            skippedWrites++;
+            return;
+        }
+
+        topInventory.setItem(slot, item);
+        slots.markSent(slot, item, hash);
+    }
+
+    @Override
+    public void discard(InventorySession session) {
+        sent.remove(session);
+    }
+
+    public long getSkippedWrites() { return skippedWrites; }
+
+    // What was last written to each slot, with its hash at that time since item stacks are mutable
+    private static class SentSlots {
+
+        private final Inventory handle;
+
+        private final ItemStack[] items;
+        private final int[] hashes;
+        private final boolean[] known;
+
+        private SentSlots(Inventory handle) {
+            this.handle = handle;
+
+            this.items = new ItemStack[handle.getSize()];
+            this.hashes = new int[items.length];
+            this.known = new boolean[items.length];
+        }
+
+        private boolean isSent(int slot, ItemStack item, int hash) {
+            if(!known[slot] || hashes[slot] != hash)
+                return false;
+
+            return items[slot] == item || (item != null && item.equals(items[slot]));
+        }
+
+        private void markSent(int slot, ItemStack item, int hash) {
+            items[slot] = item;
+            hashes[slot] = hash;
+            known[slot] = true;
+        }
+
+    }
+
+}
@@ -0,0 +1,119 @@
+package fr.minuskube.inv.render;
+
+import fr.minuskube.inv.InventorySession;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+public class DiffRenderer implements InventoryRenderer {
+
+    private final Map<InventorySession, Frame> frames = new HashMap<>();
+    private final double bulkThreshold;
+
+    public DiffRenderer() { this(0.5); }
+
+    // Above this fraction of changed slots, a flush sends the whole inventory at once
+    public DiffRenderer(double bulkThreshold) {
+        this.bulkThreshold = bulkThreshold;
+    }
+
+    @Override
+    public void render(InventorySession session, int slot, ItemStack item) {
+        Frame frame = frames.get(session);
+
+        // A new handle means the inventory has been reopened, what was sent to the previous one is stale
+        if(frame == null || frame.handle != session.getHandle()) {
+            if(session.getHandle() == null)
+                return;
+
+            frame = new Frame(session.getHandle());
+            frames.put(session, frame);
+        }
+
+        frame.pending[slot] = item;
+
+        if(!frame.dirty[slot]) {
+            frame.dirty[slot] = true;
+            frame.dirtySlots[frame.dirtyCount++] = slot;
+        }
+    }
+
+    @Override
+    public void flush(InventorySession session) {
+        Frame frame = frames.get(session);
+
+        if(frame == null || frame.dirtyCount == 0)
+            return;
+
+        int changed = 0;
+
+        for(int i = 0; i < frame.dirtyCount; i++) {
+            int slot = frame.dirtySlots[i];
+            frame.dirty[slot] = false;
+
+            ItemStack item = frame.pending[slot];
+            frame.pending[slot] = null;
+
+            if(item == frame.sent[slot] || Objects.equals(item, frame.sent[slot]))
+                continue;
+
+            // Copied, a stack changed in place and set again would otherwise always equal what was sent
+            frame.sent[slot] = item != null ? item.clone() : null;
+            frame.dirtySlots[changed++] = slot;
+        }
+
+        frame.dirtyCount = 0;
+
+        if(changed == 0)
+            return;
+
+        if(changed > frame.sent.length * bulkThreshold) {
+            emitAll(session, frame.handle, frame.sent);
+            return;
+        }
+
+        for(int i = 0; i < changed; i++) {
+            int slot = frame.dirtySlots[i];
+            emitSlot(session, frame.handle, slot, frame.sent[slot]);
+        }
+    }
+
+    @Override
+    public void discard(InventorySession session) {
+        frames.remove(session);
+    }
+
+    // Override these two to send the window items and set slot packets directly
+    protected void emitSlot(InventorySession session, Inventory handle, int slot, ItemStack item) {
+        handle.setItem(slot, item);
+    }
+
+    protected void emitAll(InventorySession session, Inventory handle, ItemStack[] items) {
+        handle.setContents(items);
+    }
+
+    private static class Frame {
+
+        private final Inventory handle;
+
+        // What the client has been sent, starting from what the opener put in the inventory
+        private final ItemStack[] sent;
+        private final ItemStack[] pending;
+        private final boolean[] dirty;
+        private final int[] dirtySlots;
+        private int dirtyCount;
+
+        private Frame(Inventory handle) {
+            this.handle = handle;
+            this.sent = handle.getContents().clone();
+            this.pending = new ItemStack[sent.length];
+            this.dirty = new boolean[sent.length];
+            this.dirtySlots = new int[sent.length];
+        }
+
+    }
+
+}
@@ -0,0 +1,14 @@
+package fr.minuskube.inv.render;
+
+import fr.minuskube.inv.InventorySession;
+import org.bukkit.inventory.ItemStack;
+
+public interface InventoryRenderer {
+
+    void render(InventorySession session, int slot, ItemStack item);
+
+    // Called after each update, click and open of the session, and once its inventory is closed
+    default void flush(InventorySession session) {}
+    default void discard(InventorySession session) {}
+
+}
@@ -0,0 +1,41 @@
+package fr.minuskube.inv.state;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+public class InMemoryMenuStateStore implements MenuStateStore {
+
+    private final Map<String, String> values = new ConcurrentHashMap<>();
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public Optional<String> get(String key) {
+        return Optional.ofNullable(values.get(key));
+    }
+
+    @Override
+    public void publish(String key, String value) {
+        String old = value == null ? values.remove(key) : values.put(key, value);
+
+        if(Objects.equals(old, value))
+            return;
+
+        listeners.forEach(listener -> listener.accept(key));
+    }
+
+    @Override
+    public void addListener(Consumer<String> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(Consumer<String> listener) {
+        listeners.remove(listener);
+    }
+
+}
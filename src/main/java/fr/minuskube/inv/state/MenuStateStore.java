@@ -0,0 +1,17 @@
+package fr.minuskube.inv.state;
+
+import java.util.Optional;
+import java.util.function.Consumer;
+
+public interface MenuStateStore {
+
+    Optional<String> get(String key);
+
+    // A null value removes the key
+    void publish(String key, String value);
+
+    // Listeners receive the changed key, possibly from another thread
+    void addListener(Consumer<String> listener);
+    void removeListener(Consumer<String> listener);
+
+}
@@ -0,0 +1,101 @@
+package fr.minuskube.inv.sim;
+
+import fr.minuskube.inv.DegradationLevel;
+import fr.minuskube.inv.InventoryManager;
+import fr.minuskube.inv.SmartInventory;
+import fr.minuskube.inv.content.InventoryContents;
+import fr.minuskube.inv.content.InventoryProvider;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// Regression checks of the updates under lag, run by gradlew check
+public final class DegradationCheck {
+
+    private static final int SHARDS = 4;
+    private static final int PLAYERS = 32;
+
+    private final SimServer server = SimServer.get();
+    private final InventoryManager manager;
+
+    private final List<Player> players = new ArrayList<>();
+    private final Map<UUID, Integer> updates = new HashMap<>();
+
+    private DegradationCheck() {
+        this.manager = new InventoryManager(server.getPlugin());
+        this.manager.setUpdateShards(SHARDS);
+        this.manager.init();
+
+        SmartInventory inv = SmartInventory.builder()
+                .id("degradation-check")
+                .size(3, 9)
+                .sharded(true)
+                .provider(new InventoryProvider() {
+                    @Override
+                    public void init(Player player, InventoryContents contents) {}
+
+                    @Override
+                    public void update(Player player, InventoryContents contents) {
+                        updates.merge(player.getUniqueId(), 1, Integer::sum);
+                    }
+                })
+                .manager(manager)
+                .build();
+
+        for(int i = 0; i < PLAYERS; i++) {
+            Player player = server.join("DegradationCheck" + i).getPlayer();
+
+            inv.open(player);
+            players.add(player);
+        }
+    }
+
+    public static void main(String[] args) {
+        DegradationCheck check = new DegradationCheck();
+
+        // Levels are only raised, recovering would need tick times below the thresholds
+        check.shardedUpdates(DegradationLevel.NONE, Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE);
+        check.shardedUpdates(DegradationLevel.LIGHT, 0, Double.MAX_VALUE, Double.MAX_VALUE);
+        check.shardedUpdates(DegradationLevel.HEAVY, 0, 0, Double.MAX_VALUE);
+        check.shardedUpdates(DegradationLevel.SEVERE, 0, 0, 0);
+
+        System.out.println("Degradation checks passed.");
+    }
+
+    // Sharded inventories used to never be updated under lag, their shard and lag checks never passed on the same tick
+    private void shardedUpdates(DegradationLevel level, double light, double heavy, double severe) {
+        manager.setDegradationThresholds(light, heavy, severe, 0);
+        server.tick();
+        server.tick();
+
+        check(manager.getDegradationLevel() == level, "The degradation level should be " + level.name() + ".");
+
+        // Every viewer has one opportunity per round over the shards, and keeps one in each interval
+        int interval = level.getUpdateInterval();
+        int expected = 2;
+
+        updates.clear();
+
+        for(int i = 0; i < SHARDS * interval * expected; i++)
+            server.tick();
+
+        check(manager.getDegradationLevel() == level, "The degradation level should stay " + level.name() + ".");
+
+        for(Player player : players) {
+            int count = updates.getOrDefault(player.getUniqueId(), 0);
+
+            check(count == expected, player.getName() + " was updated " + count + " times at " + level.name()
+                    + " instead of " + expected + ".");
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if(!condition)
+            throw new IllegalStateException(message);
+    }
+
+}
@@ -0,0 +1,194 @@
+package fr.minuskube.inv.sim;
+
+import fr.minuskube.inv.ClickableItem;
+import fr.minuskube.inv.InventoryManager;
+import fr.minuskube.inv.SmartInventory;
+import fr.minuskube.inv.content.InventoryContents;
+import fr.minuskube.inv.content.InventoryProvider;
+import fr.minuskube.inv.content.Pagination;
+import fr.minuskube.inv.content.SlotIterator;
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+// Usage: MenuSimulation [players] [ticks] [seed] [bukkit|diff]
+public final class MenuSimulation {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final Map<String, Operation> operations = new LinkedHashMap<>();
+
+    public static void main(String[] args) {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 1200;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+        boolean diff = args.length > 3 && args[3].equals("diff");
+
+        new MenuSimulation().run(players, ticks, seed, diff);
+    }
+
+    public void run(int playerCount, int ticks, long seed, boolean diff) {
+        SimServer server = SimServer.get();
+
+        InventoryManager manager = new InventoryManager(server.getPlugin());
+        manager.init();
+
+        RecordingRenderer renderer = diff ? new RecordingRenderer() : null;
+        if(renderer != null)
+            manager.setRenderer(renderer);
+
+        SmartInventory menu = SmartInventory.builder()
+                .id("simulation")
+                .title("Simulation")
+                .size(6, 9)
+                .provider(new ShopProvider(500))
+                .manager(manager)
+                .build();
+
+        List<SimPlayer> players = new ArrayList<>(playerCount);
+        for(int i = 0; i < playerCount; i++)
+            players.add(server.join("Player" + i));
+
+        Random random = new Random(seed);
+        long[] tickTimes = new long[ticks];
+        long start = System.nanoTime();
+
+        for(int tick = 0; tick < ticks; tick++) {
+            long tickStart = System.nanoTime();
+
+            for(SimPlayer player : players) {
+                double roll = random.nextDouble();
+
+                if(!player.hasMenuOpen()) {
+                    if(roll < 0.05)
+                        measure("open", () -> menu.open(player.getPlayer()));
+                }
+                else if(roll < 0.25) {
+                    int slot = random.nextInt(player.getTopInventory().getSize());
+                    measure("click", () -> player.click(slot));
+                }
+                else if(roll < 0.27)
+                    measure("close", player::close);
+            }
+
+            measure("tick", server::tick);
+            tickTimes[tick] = System.nanoTime() - tickStart;
+        }
+
+        long wallTime = System.nanoTime() - start;
+        report(playerCount, ticks, seed, wallTime, tickTimes, server);
+
+        if(renderer != null)
+            System.out.println(String.format(Locale.ROOT, "Renderer: %d slot updates, %d bulk updates",
+                    renderer.getSlotUpdates(), renderer.getBulkUpdates()));
+    }
+
+    private void measure(String name, Runnable runnable) {
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+
+        runnable.run();
+
+        long time = System.nanoTime() - start;
+        operations.computeIfAbsent(name, k -> new Operation()).record(time, allocatedBytes() - allocated);
+    }
+
+    private void report(int players, int ticks, long seed, long wallTime, long[] tickTimes, SimServer server) {
+        long count = operations.values().stream().mapToLong(op -> op.count).sum();
+        long[] sorted = tickTimes.clone();
+        Arrays.sort(sorted);
+
+        System.out.println(String.format(Locale.ROOT, "SmartInvs simulation: %d players, %d ticks, seed %d", players, ticks, seed));
+        System.out.println(String.format(Locale.ROOT, "Wall time: %.1f ms, %.0f operations/s",
+                wallTime / 1e6, count / (wallTime / 1e9)));
+        System.out.println(String.format(Locale.ROOT, "Tick time: p50 %.3f ms, p90 %.3f ms, p99 %.3f ms, max %.3f ms",
+                percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.90) / 1e6,
+                percentile(sorted, 0.99) / 1e6, sorted[sorted.length - 1] / 1e6));
+        System.out.println(String.format(Locale.ROOT, "Slot writes: %d, inventory resyncs: %d",
+                server.getSlotWrites(), server.getResyncs()));
+        System.out.println();
+        System.out.println(String.format(Locale.ROOT, "%-8s %10s %12s %14s", "op", "count", "avg us", "alloc/op B"));
+
+        operations.forEach((name, op) -> System.out.println(String.format(Locale.ROOT, "%-8s %10d %12.2f %14s",
+                name, op.count, op.time / 1e3 / op.count,
+                op.allocated < 0 ? "n/a" : String.valueOf(op.allocated / op.count))));
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1)];
+    }
+
+    private static long allocatedBytes() {
+        if(THREADS instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+
+        return -1;
+    }
+
+    private static final class Operation {
+
+        private long count;
+        private long time;
+        private long allocated;
+
+        private void record(long time, long allocated) {
+            this.count++;
+            this.time += time;
+            this.allocated = this.allocated < 0 || allocated < 0 ? -1 : this.allocated + allocated;
+        }
+
+    }
+
+    // A typical paginated menu: border, page items, navigation and a clock refreshed by update
+    private static final class ShopProvider implements InventoryProvider {
+
+        private final ClickableItem[] items;
+        private final ClickableItem border = ClickableItem.empty(new ItemStack(Material.STAINED_GLASS_PANE));
+
+        private ShopProvider(int itemCount) {
+            this.items = new ClickableItem[itemCount];
+
+            for(int i = 0; i < itemCount; i++)
+                items[i] = ClickableItem.of(new ItemStack(Material.EMERALD, 1 + i % 64), e -> {});
+        }
+
+        @Override
+        public void init(Player player, InventoryContents contents) {
+            Pagination pagination = contents.pagination();
+
+            contents.fillBorders(border);
+
+            pagination.setItems(items);
+            pagination.setItemsPerPage(28);
+            pagination.addToIterator(contents.newIterator(SlotIterator.Type.HORIZONTAL, 1, 1)
+                    .blacklist(1, 8).blacklist(2, 0).blacklist(2, 8)
+                    .blacklist(3, 0).blacklist(3, 8).blacklist(4, 0));
+
+            contents.set(5, 3, ClickableItem.of(new ItemStack(Material.ARROW),
+                    e -> contents.inventory().open(player, pagination.previous().getPage())));
+            contents.set(5, 5, ClickableItem.of(new ItemStack(Material.ARROW),
+                    e -> contents.inventory().open(player, pagination.next().getPage())));
+        }
+
+        @Override
+        public void update(Player player, InventoryContents contents) {
+            int ticks = contents.property("ticks", 0) + 1;
+            contents.setProperty("ticks", ticks);
+
+            if(ticks % 20 == 0)
+                contents.set(0, 4, ClickableItem.empty(new ItemStack(Material.WATCH, ticks / 20 % 64 + 1)));
+        }
+
+    }
+
+}
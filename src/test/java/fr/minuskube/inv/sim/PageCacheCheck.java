@@ -0,0 +1,121 @@
+package fr.minuskube.inv.sim;
+
+import fr.minuskube.inv.ClickableItem;
+import fr.minuskube.inv.InventoryManager;
+import fr.minuskube.inv.SmartInventory;
+import fr.minuskube.inv.content.InventoryContents;
+import fr.minuskube.inv.content.PaginationSource;
+import fr.minuskube.inv.content.SlotIterator;
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+// Regression checks of the page cache, a cached page must render exactly like a fresh one, run by gradlew check
+public final class PageCacheCheck {
+
+    private static final int ITEMS_PER_PAGE = 5;
+
+    private final ClickableItem marker = ClickableItem.empty(new ItemStack(Material.BARRIER));
+    private final CountingSource source = new CountingSource(12);
+
+    private final InventoryManager manager;
+    private final Player player;
+
+    private PageCacheCheck() {
+        SimServer server = SimServer.get();
+
+        this.manager = new InventoryManager(server.getPlugin());
+        this.manager.init();
+
+        this.player = server.join("PageCacheCheck").getPlayer();
+    }
+
+    public static void main(String[] args) {
+        PageCacheCheck check = new PageCacheCheck();
+
+        check.hitMatchesMiss(false);
+        check.hitMatchesMiss(true);
+
+        System.out.println("Page cache checks passed.");
+    }
+
+    // Writing after addToIterator used to overwrite the last item of a cached page, its iterator was never started
+    private void hitMatchesMiss(boolean startedIterator) {
+        SmartInventory inv = SmartInventory.builder()
+                .id("page-cache-check")
+                .size(3, 9)
+                .pageCache(4)
+                .provider((player, contents) -> {
+                    SlotIterator iterator = contents.newIterator(SlotIterator.Type.HORIZONTAL, 1, 0);
+
+                    if(startedIterator)
+                        iterator.next();
+
+                    contents.pagination().setSource(source).setItemsPerPage(ITEMS_PER_PAGE).addToIterator(iterator);
+                    iterator.next().set(marker);
+                })
+                .manager(manager)
+                .build();
+
+        inv.open(player, 0);
+        ClickableItem[][] miss = snapshot();
+        int fetched = source.fetched;
+
+        inv.open(player, 1);
+        inv.open(player, 0);
+        ClickableItem[][] hit = snapshot();
+
+        check(source.fetched == fetched + ITEMS_PER_PAGE, "Reopening a page should be served by the page cache.");
+
+        for(int row = 0; row < miss.length; row++) {
+            for(int column = 0; column < miss[row].length; column++) {
+                check(miss[row][column] == hit[row][column], "A cached page differs from a fresh one at "
+                        + row + ", " + column + (startedIterator ? " with a started iterator." : "."));
+            }
+        }
+
+        inv.close(player);
+    }
+
+    private ClickableItem[][] snapshot() {
+        InventoryContents contents = manager.getContents(player)
+                .orElseThrow(() -> new IllegalStateException("The inventory should be open."));
+
+        ClickableItem[][] all = contents.all();
+        ClickableItem[][] copy = new ClickableItem[all.length][];
+
+        for(int row = 0; row < all.length; row++)
+            copy[row] = all[row].clone();
+
+        return copy;
+    }
+
+    private static void check(boolean condition, String message) {
+        if(!condition)
+            throw new IllegalStateException(message);
+    }
+
+    private static final class CountingSource implements PaginationSource {
+
+        private final ClickableItem[] items;
+        private int fetched;
+
+        private CountingSource(int size) {
+            this.items = new ClickableItem[size];
+
+            for(int i = 0; i < size; i++)
+                items[i] = ClickableItem.empty(new ItemStack(Material.STONE, i + 1));
+        }
+
+        @Override
+        public int size() { return items.length; }
+
+        @Override
+        public ClickableItem get(int index) {
+            fetched++;
+            return items[index];
+        }
+
+    }
+
+}
@@ -0,0 +1,29 @@
+package fr.minuskube.inv.sim;
+
+import fr.minuskube.inv.InventorySession;
+import fr.minuskube.inv.render.DiffRenderer;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+
+// Counts what would be sent as set slot and window items packets instead of writing through Bukkit
+final class RecordingRenderer extends DiffRenderer {
+
+    private long slotUpdates;
+    private long bulkUpdates;
+
+    @Override
+    protected void emitSlot(InventorySession session, Inventory handle, int slot, ItemStack item) {
+        slotUpdates++;
+        super.emitSlot(session, handle, slot, item);
+    }
+
+    @Override
+    protected void emitAll(InventorySession session, Inventory handle, ItemStack[] items) {
+        bulkUpdates++;
+        super.emitAll(session, handle, items);
+    }
+
+    long getSlotUpdates() { return slotUpdates; }
+    long getBulkUpdates() { return bulkUpdates; }
+
+}
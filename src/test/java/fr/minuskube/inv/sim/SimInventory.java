@@ -0,0 +1,78 @@
+package fr.minuskube.inv.sim;
+
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.inventory.ItemStack;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+final class SimInventory implements InvocationHandler {
+
+    private final ItemStack[] items;
+    private final InventoryType type;
+    private final String title;
+    private final InventoryHolder holder;
+
+    private final Inventory proxy;
+    private final SimServer server;
+
+    SimInventory(SimServer server, InventoryHolder holder, InventoryType type, int size, String title) {
+        this.server = server;
+        this.holder = holder;
+        this.type = type;
+        this.title = title;
+        this.items = new ItemStack[size];
+
+        this.proxy = (Inventory) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { Inventory.class }, this);
+    }
+
+    Inventory proxy() { return proxy; }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        switch(method.getName()) {
+            case "getSize":
+                return items.length;
+            case "getItem":
+                return items[(int) args[0]];
+            case "setItem":
+                items[(int) args[0]] = (ItemStack) args[1];
+                server.countSlotWrite();
+                return null;
+            case "getContents":
+                return items.clone();
+            case "setContents":
+                ItemStack[] contents = (ItemStack[]) args[0];
+                Arrays.fill(items, null);
+                System.arraycopy(contents, 0, items, 0, Math.min(contents.length, items.length));
+                server.countSlotWrite();
+                return null;
+            case "clear":
+                if(args == null)
+                    Arrays.fill(items, null);
+                else
+                    items[(int) args[0]] = null;
+                return null;
+            case "getType":
+                return type;
+            case "getName":
+            case "getTitle":
+                return title;
+            case "getHolder":
+                return holder;
+            case "getViewers":
+                return new ArrayList<>();
+            case "iterator":
+                return Arrays.asList(items).listIterator();
+            default:
+                return SimServer.handleObjectMethod(proxy, method, args);
+        }
+    }
+
+}
@@ -0,0 +1,141 @@
+package fr.minuskube.inv.sim;
+
+import org.bukkit.entity.HumanEntity;
+import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.ClickType;
+import org.bukkit.event.inventory.InventoryAction;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.inventory.InventoryOpenEvent;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryView;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.UUID;
+
+public final class SimPlayer implements InvocationHandler {
+
+    private final SimServer server;
+    private final UUID uuid;
+    private final String name;
+
+    private final Player proxy;
+    private final Inventory inventory;
+    private final InventoryView craftingView;
+
+    private InventoryView view;
+
+    SimPlayer(SimServer server, UUID uuid, String name) {
+        this.server = server;
+        this.uuid = uuid;
+        this.name = name;
+
+        this.proxy = (Player) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { Player.class }, this);
+
+        this.inventory = new SimInventory(server, proxy, InventoryType.PLAYER, 36, "Inventory").proxy();
+        this.craftingView = new View(new SimInventory(server, proxy, InventoryType.CRAFTING, 5, "Crafting").proxy());
+        this.view = craftingView;
+    }
+
+    public Player getPlayer() { return proxy; }
+    public UUID getUniqueId() { return uuid; }
+
+    public boolean hasMenuOpen() { return view != craftingView; }
+    public Inventory getTopInventory() { return view.getTopInventory(); }
+
+    // Mirrors the client clicking a slot of the open window, returns whether the click was cancelled
+    public boolean click(int rawSlot) {
+        InventoryClickEvent event = new InventoryClickEvent(view, InventoryType.SlotType.CONTAINER,
+                rawSlot, ClickType.LEFT, InventoryAction.PICKUP_ALL);
+
+        server.callEvent(event);
+        return event.isCancelled();
+    }
+
+    public void close() {
+        if(!hasMenuOpen())
+            return;
+
+        InventoryView closed = view;
+        view = craftingView;
+
+        server.callEvent(new InventoryCloseEvent(closed));
+    }
+
+    public void quit() {
+        close();
+
+        server.callEvent(new PlayerQuitEvent(proxy, null));
+        server.removePlayer(this);
+    }
+
+    private InventoryView open(Inventory top) {
+        // Like the server, the window which is currently open gets closed first
+        close();
+
+        InventoryView opened = new View(top);
+        InventoryOpenEvent event = new InventoryOpenEvent(opened);
+        server.callEvent(event);
+
+        if(event.isCancelled())
+            return null;
+
+        view = opened;
+        return view;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        switch(method.getName()) {
+            case "getUniqueId":
+                return uuid;
+            case "getName":
+            case "getDisplayName":
+                return name;
+            case "getOpenInventory":
+                return view;
+            case "openInventory":
+                return args[0] instanceof Inventory ? open((Inventory) args[0]) : null;
+            case "closeInventory":
+                close();
+                return null;
+            case "updateInventory":
+                server.countResync();
+                return null;
+            case "getInventory":
+                return inventory;
+            case "isOnline":
+                return true;
+            default:
+                return SimServer.handleObjectMethod(proxy, method, args);
+        }
+    }
+
+    private class View extends InventoryView {
+
+        private final Inventory top;
+
+        private View(Inventory top) {
+            this.top = top;
+        }
+
+        @Override
+        public Inventory getTopInventory() { return top; }
+
+        @Override
+        public Inventory getBottomInventory() { return inventory; }
+
+        @Override
+        public HumanEntity getPlayer() { return proxy; }
+
+        @Override
+        public InventoryType getType() { return top.getType(); }
+
+    }
+
+}
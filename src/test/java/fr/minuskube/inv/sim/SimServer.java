@@ -0,0 +1,336 @@
+package fr.minuskube.inv.sim;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.plugin.java.JavaPluginLoader;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+// In-memory stand-in for the parts of the server used by SmartInvs: players, inventories,
+// event dispatching and a scheduler driven tick by tick from the caller's thread.
+public final class SimServer {
+
+    private static SimServer instance;
+
+    private final Logger logger = Logger.getLogger("SimServer");
+    private final Thread mainThread = Thread.currentThread();
+
+    private final Map<UUID, SimPlayer> players = new LinkedHashMap<>();
+    private final List<RegisteredHandler> handlers = new ArrayList<>();
+    private final Map<Class<?>, List<RegisteredHandler>> handlersByEvent = new HashMap<>();
+
+    private final PriorityQueue<Task> tasks = new PriorityQueue<>(
+            Comparator.comparingLong((Task task) -> task.nextRun).thenComparingInt(task -> task.id));
+    private final Map<Integer, Task> tasksById = new HashMap<>();
+    private int nextTaskId = 1;
+    private long currentTick;
+
+    private long slotWrites;
+    private long resyncs;
+
+    private final Server server;
+    private final SimPlugin plugin;
+
+    // JavaPluginLoader(Server) is deprecated for use by the server only, but there is no server here to load plugins
+    @SuppressWarnings("deprecation")
+    private SimServer() {
+        this.server = proxy(Server.class, this::invokeServer);
+
+        Bukkit.setServer(server);
+
+        PluginDescriptionFile description = new PluginDescriptionFile("SmartInvsSim", "1.0", SimPlugin.class.getName());
+        this.plugin = new SimPlugin(new JavaPluginLoader(server), description);
+        this.plugin.enable();
+    }
+
+    // Bukkit only accepts its server singleton once per JVM
+    public static SimServer get() {
+        if(instance == null)
+            instance = new SimServer();
+
+        return instance;
+    }
+
+    public JavaPlugin getPlugin() { return plugin; }
+    public long getCurrentTick() { return currentTick; }
+
+    public long getSlotWrites() { return slotWrites; }
+    public long getResyncs() { return resyncs; }
+
+    void countSlotWrite() { slotWrites++; }
+    void countResync() { resyncs++; }
+
+    public SimPlayer join(String name) {
+        SimPlayer player = new SimPlayer(this, UUID.nameUUIDFromBytes(name.getBytes()), name);
+        players.put(player.getUniqueId(), player);
+        return player;
+    }
+
+    void removePlayer(SimPlayer player) {
+        players.remove(player.getUniqueId());
+    }
+
+    // Runs every task due for the next tick, the manager's update task included
+    public void tick() {
+        currentTick++;
+
+        while(!tasks.isEmpty() && tasks.peek().nextRun <= currentTick) {
+            Task task = tasks.poll();
+
+            if(task.cancelled)
+                continue;
+
+            task.runnable.run();
+
+            if(task.period > 0 && !task.cancelled) {
+                task.nextRun = currentTick + task.period;
+                tasks.add(task);
+            }
+            else
+                tasksById.remove(task.id);
+        }
+    }
+
+    public void callEvent(Event event) {
+        List<RegisteredHandler> eventHandlers = handlersByEvent.computeIfAbsent(event.getClass(), type -> {
+            List<RegisteredHandler> list = new ArrayList<>();
+
+            for(RegisteredHandler handler : handlers) {
+                if(handler.method.getParameterTypes()[0].isAssignableFrom(type))
+                    list.add(handler);
+            }
+
+            list.sort(Comparator.comparingInt(handler -> handler.priority));
+            return list;
+        });
+
+        for(RegisteredHandler handler : eventHandlers) {
+            try {
+                handler.method.invoke(handler.listener, event);
+            } catch(InvocationTargetException e) {
+                throw new IllegalStateException("Error while passing " + event.getClass().getSimpleName(), e.getCause());
+            } catch(IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private void registerEvents(Listener listener) {
+        for(Method method : listener.getClass().getDeclaredMethods()) {
+            EventHandler annotation = method.getAnnotation(EventHandler.class);
+
+            if(annotation == null || method.getParameterTypes().length != 1)
+                continue;
+
+            method.setAccessible(true);
+            handlers.add(new RegisteredHandler(listener, method, annotation.priority().ordinal()));
+        }
+
+        handlersByEvent.clear();
+    }
+
+    private BukkitTask schedule(Runnable runnable, long delay, long period) {
+        Task task = new Task(nextTaskId++, runnable, currentTick + Math.max(delay, 1), period);
+
+        tasks.add(task);
+        tasksById.put(task.id, task);
+        return task.handle;
+    }
+
+    private void cancelTask(int id) {
+        Task task = tasksById.remove(id);
+
+        if(task != null)
+            task.cancelled = true;
+    }
+
+    private Object invokeServer(Object proxy, Method method, Object[] args) {
+        switch(method.getName()) {
+            case "getLogger":
+                return logger;
+            case "getName":
+                return "SimServer";
+            case "getVersion":
+            case "getBukkitVersion":
+                return "sim";
+            case "isPrimaryThread":
+                return Thread.currentThread() == mainThread;
+            case "getPluginManager":
+                return pluginManager;
+            case "getScheduler":
+                return scheduler;
+            case "getPlayer":
+                if(args[0] instanceof UUID) {
+                    SimPlayer player = players.get(args[0]);
+                    return player != null ? player.getPlayer() : null;
+                }
+                return null;
+            case "getOnlinePlayers":
+                List<Player> online = new ArrayList<>();
+                players.values().forEach(player -> online.add(player.getPlayer()));
+                return online;
+            case "createInventory":
+                InventoryHolder holder = (InventoryHolder) args[0];
+                String title = args.length > 2 ? (String) args[2] : "";
+
+                if(args[1] instanceof InventoryType) {
+                    InventoryType type = (InventoryType) args[1];
+                    return new SimInventory(this, holder, type, type.getDefaultSize(), title).proxy();
+                }
+
+                return new SimInventory(this, holder, InventoryType.CHEST, (int) args[1], title).proxy();
+            default:
+                return handleObjectMethod(proxy, method, args);
+        }
+    }
+
+    private final PluginManager pluginManager = proxy(PluginManager.class, (proxy, method, args) -> {
+        switch(method.getName()) {
+            case "registerEvents":
+                registerEvents((Listener) args[0]);
+                return null;
+            case "callEvent":
+                callEvent((Event) args[0]);
+                return null;
+            default:
+                return handleObjectMethod(proxy, method, args);
+        }
+    });
+
+    private final BukkitScheduler scheduler = proxy(BukkitScheduler.class, (proxy, method, args) -> {
+        switch(method.getName()) {
+            // Asynchronous tasks are run on the main thread as well, to keep runs deterministic
+            case "runTask":
+            case "runTaskAsynchronously":
+                return schedule((Runnable) args[1], 0, 0);
+            case "runTaskLater":
+            case "runTaskLaterAsynchronously":
+                return schedule((Runnable) args[1], (long) args[2], 0);
+            case "runTaskTimer":
+            case "runTaskTimerAsynchronously":
+                return schedule((Runnable) args[1], (long) args[2], Math.max((long) args[3], 1));
+            case "cancelTask":
+                cancelTask((int) args[0]);
+                return null;
+            default:
+                return handleObjectMethod(proxy, method, args);
+        }
+    });
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(SimServer.class.getClassLoader(), new Class<?>[] { type }, handler);
+    }
+
+    static Object handleObjectMethod(Object proxy, Method method, Object[] args) {
+        switch(method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return proxy.getClass().getInterfaces()[0].getSimpleName() + "@" + System.identityHashCode(proxy);
+        }
+
+        Class<?> type = method.getReturnType();
+
+        if(type == boolean.class)
+            return false;
+        if(type == int.class || type == short.class || type == byte.class || type == char.class)
+            return type == char.class ? (Object) '\0' : (Object) 0;
+        if(type == long.class)
+            return 0L;
+        if(type == double.class)
+            return 0D;
+        if(type == float.class)
+            return 0F;
+
+        return null;
+    }
+
+    private final class Task {
+
+        private final int id;
+        private final Runnable runnable;
+        private final long period;
+        private final BukkitTask handle;
+
+        private long nextRun;
+        private boolean cancelled;
+
+        private Task(int id, Runnable runnable, long nextRun, long period) {
+            this.id = id;
+            this.runnable = runnable;
+            this.nextRun = nextRun;
+            this.period = period;
+
+            this.handle = proxy(BukkitTask.class, (proxy, method, args) -> {
+                switch(method.getName()) {
+                    case "getTaskId":
+                        return this.id;
+                    case "getOwner":
+                        return plugin;
+                    case "isSync":
+                        return true;
+                    case "cancel":
+                        cancelTask(this.id);
+                        return null;
+                    default:
+                        return handleObjectMethod(proxy, method, args);
+                }
+            });
+        }
+
+    }
+
+    private static final class RegisteredHandler {
+
+        private final Listener listener;
+        private final Method method;
+        private final int priority;
+
+        private RegisteredHandler(Listener listener, Method method, int priority) {
+            this.listener = listener;
+            this.method = method;
+            this.priority = priority;
+        }
+
+    }
+
+    public static final class SimPlugin extends JavaPlugin {
+
+        private SimPlugin(JavaPluginLoader loader, PluginDescriptionFile description) {
+            super(loader, description, new File("build/sim"), new File("build/sim/plugin.jar"));
+        }
+
+        private void enable() {
+            setEnabled(true);
+        }
+
+    }
+
+}
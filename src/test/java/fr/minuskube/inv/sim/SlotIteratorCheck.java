@@ -0,0 +1,151 @@
+package fr.minuskube.inv.sim;
+
+import fr.minuskube.inv.ClickableItem;
+import fr.minuskube.inv.InventoryManager;
+import fr.minuskube.inv.SmartInventory;
+import fr.minuskube.inv.content.InventoryContents;
+import fr.minuskube.inv.content.Layout;
+import fr.minuskube.inv.content.SlotIterator;
+import fr.minuskube.inv.content.SlotPos;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.UUID;
+
+// Regression checks of SlotIterator edge cases, run by gradlew check
+public final class SlotIteratorCheck {
+
+    private static final ClickableItem ITEM = ClickableItem.empty(new ItemStack(Material.STONE));
+
+    private final SmartInventory inv;
+
+    private SlotIteratorCheck() {
+        InventoryManager manager = new InventoryManager(SimServer.get().getPlugin());
+
+        this.inv = SmartInventory.builder()
+                .id("check")
+                .size(3, 9)
+                .provider((player, contents) -> {})
+                .manager(manager)
+                .build();
+    }
+
+    public static void main(String[] args) {
+        SlotIteratorCheck check = new SlotIteratorCheck();
+
+        check.absentLayoutGroup();
+        check.previousAcrossRows();
+        check.previousAcrossColumns();
+        check.backwardWalk();
+        check.regionBounds();
+        check.customBounds();
+
+        System.out.println("SlotIterator checks passed.");
+    }
+
+    // A group missing from the layout has no slot, its iterator must neither throw nor write anywhere
+    private void absentLayoutGroup() {
+        InventoryContents contents = contents();
+        SlotIterator iterator = contents.newIterator(Layout.of("xxxxxxxxx"), 'y');
+
+        iterator.next().set(ITEM);
+        iterator.next().set(ITEM);
+        iterator.previous().set(ITEM);
+
+        check(iterator.ended(), "An iterator over an absent group should be ended.");
+
+        contents.pagination().setItems(ITEM, ITEM, ITEM).setItemsPerPage(3).addToIterator(iterator);
+        checkEmpty(contents, "An iterator over an absent group should not write any slot.");
+    }
+
+    // previous() used to skip the first slot of a row, wrapping as soon as it reached column 0
+    private void previousAcrossRows() {
+        SlotIterator iterator = contents().newIterator(SlotIterator.Type.HORIZONTAL, 1, 1);
+
+        iterator.previous();
+        checkAt(iterator.previous(), 1, 0);
+        checkAt(iterator.previous(), 0, 8);
+        checkAt(iterator.previous(), 0, 7);
+    }
+
+    private void previousAcrossColumns() {
+        SlotIterator iterator = contents().newIterator(SlotIterator.Type.VERTICAL, 1, 1);
+
+        iterator.previous();
+        checkAt(iterator.previous(), 0, 1);
+        checkAt(iterator.previous(), 2, 0);
+        checkAt(iterator.previous(), 1, 0);
+    }
+
+    // Going back from the last slot visits every slot once, down to the first one where it stays
+    private void backwardWalk() {
+        SlotIterator iterator = contents().newIterator(SlotIterator.Type.HORIZONTAL, 2, 8);
+
+        for(int slot = 3 * 9 - 1; slot >= 0; slot--)
+            checkAt(iterator.previous(), slot / 9, slot % 9);
+
+        checkAt(iterator.previous(), 0, 0);
+    }
+
+    private void regionBounds() {
+        InventoryContents contents = contents();
+
+        checkThrows(() -> contents.newIterator(SlotIterator.Type.HORIZONTAL, 0, 5, 1, 9),
+                "A region wider than the inventory should be rejected.");
+        checkThrows(() -> contents.newIterator(SlotIterator.Type.HORIZONTAL, 1, 0, 3, 8),
+                "A region taller than the inventory should be rejected.");
+        checkThrows(() -> contents.newIterator(SlotIterator.Type.HORIZONTAL, -1, 0, 1, 8),
+                "A region with a negative row should be rejected.");
+        checkThrows(() -> contents.newIterator(SlotIterator.Type.HORIZONTAL, 2, 0, 1, 8),
+                "A region ending before it starts should be rejected.");
+
+        SlotIterator iterator = contents.newIterator(SlotIterator.Type.HORIZONTAL, 1, 7, 2, 8);
+
+        checkAt(iterator.next(), 1, 7);
+        checkAt(iterator.next(), 1, 8);
+        checkAt(iterator.next(), 2, 7);
+    }
+
+    private void customBounds() {
+        InventoryContents contents = contents();
+
+        checkThrows(() -> contents.newIterator(new SlotPos(0, 0), new SlotPos(0, 9)),
+                "A custom slot outside of the columns should be rejected.");
+        checkThrows(() -> contents.newIterator(new SlotPos(3, 0)),
+                "A custom slot outside of the rows should be rejected.");
+        checkThrows(() -> contents.newIterator(new SlotPos(-1, 4)),
+                "A custom slot with a negative row should be rejected.");
+    }
+
+    private InventoryContents contents() {
+        return new InventoryContents.Impl(inv, UUID.randomUUID());
+    }
+
+    private void checkEmpty(InventoryContents contents, String message) {
+        for(ClickableItem[] row : contents.all()) {
+            for(ClickableItem item : row)
+                check(item == null, message);
+        }
+    }
+
+    private static void checkAt(SlotIterator iterator, int row, int column) {
+        check(iterator.row() == row && iterator.column() == column, "The iterator should be at " + row + ", " + column
+                + ", found: " + iterator.row() + ", " + iterator.column() + ".");
+    }
+
+    private static void checkThrows(Runnable runnable, String message) {
+        try {
+            runnable.run();
+        } catch(IllegalArgumentException e) {
+            return;
+        }
+
+        throw new IllegalStateException(message);
+    }
+
+    private static void check(boolean condition, String message) {
+        if(!condition)
+            throw new IllegalStateException(message);
+    }
+
+}